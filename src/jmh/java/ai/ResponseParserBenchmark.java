@@ -0,0 +1,70 @@
+package ai;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pulls the answer text out of provider responses the size of a typical five-command answer
+ * and of a long one, covering the quote scan and the unescape chain separately
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseParserBenchmark {
+    @Param({"5", "50"})
+    int commands;
+
+    String openAiResponse;
+    String geminiResponse;
+    String escapedContent;
+    int contentStart;
+
+    @Setup
+    public void setUp() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < commands; i++) {
+            content.append("COMMAND: journalctl -u \\\"service-").append(i).append("\\\" --no-pager\\n")
+                   .append("PURPOSE: Shows the recent log of the service,\\tincluding \\\"failed\\\" units\\r\\n");
+        }
+        escapedContent = content.toString();
+        openAiResponse = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"choices\":[{\"index\":0," +
+            "\"message\":{\"role\":\"assistant\",\"content\":\"" + escapedContent + "\"},\"finish_reason\":\"stop\"}]," +
+            "\"usage\":{\"prompt_tokens\":512,\"completion_tokens\":256,\"total_tokens\":768}}";
+        geminiResponse = "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"" + escapedContent + "\"}]," +
+            "\"role\": \"model\"},\"finishReason\": \"STOP\",\"index\": 0}]}";
+        contentStart = openAiResponse.indexOf("\"content\":\"") + 11;
+    }
+
+    @Benchmark
+    public String extractOpenAi() {
+        return ResponseParser.extractStringField(openAiResponse, "content");
+    }
+
+    @Benchmark
+    public String extractGemini() {
+        return ResponseParser.extractStringField(geminiResponse, "text");
+    }
+
+    @Benchmark
+    public int findMatchingClosingQuote() {
+        return ResponseParser.findMatchingClosingQuote(openAiResponse, contentStart);
+    }
+
+    @Benchmark
+    public String unescape() {
+        return ResponseParser.unescape(escapedContent);
+    }
+}
@@ -0,0 +1,46 @@
+package cli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Truncates command output for display, from a small listing up to a multi-megabyte log dump
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatCommandOutputBenchmark {
+    @Param({"4096", "1048576", "8388608"})
+    int outputBytes;
+
+    String output;
+
+    @Setup
+    public void setUp() {
+        String line = "Oct 19 17:08:16 host kernel: [12345.678901] nginx[4242]: upstream timed out " +
+                      "(110: Connection timed out) while reading response header from upstream\n";
+        StringBuilder builder = new StringBuilder(outputBytes + line.length());
+        while (builder.length() < outputBytes) {
+            builder.append(line);
+        }
+        output = builder.toString();
+    }
+
+    @Benchmark
+    public String formatCommandOutput() {
+        return TroubleshootingSession.formatCommandOutput(output);
+    }
+}
@@ -0,0 +1,40 @@
+package system;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tokenises command lines of the shapes the AI produces: plain, quoted, and with escapes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SystemExecutorBenchmark {
+    static final String[] COMMANDS = {
+        "df -h",
+        "ps aux --sort=-%mem",
+        "journalctl -u nginx --since '1 hour ago' --no-pager",
+        "grep -rn \"connection refused\" /var/log/nginx/error.log",
+        "find /var/log -name '*.gz' -mtime +30 -printf \"%p %s\\n\"",
+        "docker inspect --format '{{.State.Health.Status}}' web-1"
+    };
+
+    @Benchmark
+    public void parseCommand(Blackhole blackhole) {
+        for (String command : COMMANDS) {
+            blackhole.consume(SystemExecutor.parseCommand(command));
+        }
+    }
+}
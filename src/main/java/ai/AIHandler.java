@@ -1,69 +1,100 @@
 package ai;
 
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Arrays;
-import java.util.List;
+import metrics.Metrics;
+import metrics.Tracer;
 
 public class AIHandler {
     private final String provider;
-    private String model;
+    private final Model strong;
+    private volatile Model fast;
     private final String apiKey;
-    
-    // Valid OpenAI models
-    private static final List<String> VALID_OPENAI_MODELS = Arrays.asList(
-        "gpt-4", "gpt-4-turbo", "gpt-4-0125-preview", "gpt-4-1106-preview", "gpt-4-vision-preview",
-        "gpt-3.5-turbo", "gpt-3.5-turbo-0125", "gpt-3.5-turbo-1106"
-    );
-    
-    // Valid Gemini models
-    private static final List<String> VALID_GEMINI_MODELS = Arrays.asList(
-        "gemini-pro", "gemini-1.0-pro", "gemini-1.5-pro", "gemini-1.5-flash", "gemini-ultra"
-    );
-    
-    // Model autocorrection mappings
-    private static final Map<String, String> MODEL_CORRECTIONS = new HashMap<>();
-    static {
-        // Gemini corrections
-        MODEL_CORRECTIONS.put("gemini", "gemini-pro");
-        MODEL_CORRECTIONS.put("gemini-1.5", "gemini-1.5-pro");
-        MODEL_CORRECTIONS.put("gemini-1.0", "gemini-pro");
-        MODEL_CORRECTIONS.put("gemini-ultra-vision", "gemini-ultra");
-        
-        // OpenAI corrections
-        MODEL_CORRECTIONS.put("gpt4", "gpt-4");
-        MODEL_CORRECTIONS.put("gpt-4-latest", "gpt-4-turbo");
-        MODEL_CORRECTIONS.put("gpt-3.5", "gpt-3.5-turbo");
-        MODEL_CORRECTIONS.put("gpt3.5", "gpt-3.5-turbo");
-        MODEL_CORRECTIONS.put("gpt3", "gpt-3.5-turbo");
+    private final String baseUrl;
+    private final AIProvider providerImpl;
+    private ResponseCache responseCache;
+
+    /**
+     * A model name, validated with the provider before its first request
+     */
+    private static final class Model {
+        volatile String name;
+        volatile boolean validated;
+
+        Model(String name) {
+            this.name = name;
+        }
     }
 
+    // Sampling temperature sent to every provider; also part of the response cache key
+    static final double TEMPERATURE = 0.2;
+
+    // Upper bound on the length of each answer
+    static final int MAX_TOKENS = 1024;
+
+    // Answer of a query whose provider call was cancelled
+    public static final String CANCELLED_RESPONSE = "[ERROR] Request cancelled";
+
+    // Keeps structured answers apart from free-text answers to the same prompt in the cache
+    private static final String STRUCTURED_CACHE_PREFIX = "structured:";
+
     public AIHandler(String provider, String model, String apiKey) {
+        this(provider, model, apiKey, null);
+    }
+
+    /**
+     * @param baseUrl Base URL overriding the provider's default endpoint; required by the
+     *                Local provider (e.g. http://localhost:8080/v1)
+     */
+    public AIHandler(String provider, String model, String apiKey, String baseUrl) {
         this.provider = provider;
-        this.apiKey = apiKey;
-        
-        // Apply model name corrections if necessary
-        if (MODEL_CORRECTIONS.containsKey(model.toLowerCase())) {
-            String correctedModel = MODEL_CORRECTIONS.get(model.toLowerCase());
+        this.apiKey = apiKey == null ? "" : apiKey;
+        this.baseUrl = baseUrl;
+        this.providerImpl = AIProviders.find(provider);
+
+        this.strong = new Model(correct(model));
+    }
+
+    // Apply model name corrections if necessary
+    private String correct(String model) {
+        String correctedModel = providerImpl == null ? model : providerImpl.correctModel(model);
+        if (!correctedModel.equals(model)) {
             System.out.println("Note: Corrected model name from '" + model + "' to '" + correctedModel + "'");
-            this.model = correctedModel;
-        } else {
-            this.model = model;
         }
+        return correctedModel;
     }
-    
+
     public String getProvider() {
         return provider;
     }
-    
+
     public String getModel() {
-        return model;
+        return strong.name;
+    }
+
+    /**
+     * Route queries that ask for a fast answer, such as picking diagnostic commands, to a cheaper model
+     * @param fastModel The model for fast queries, or null to use the main model for everything
+     */
+    public void setFastModel(String fastModel) {
+        this.fast = fastModel == null || fastModel.isEmpty() ? null : new Model(correct(fastModel));
+    }
+
+    /**
+     * @return The model fast queries go to, or null if they use the main model
+     */
+    public String getFastModel() {
+        Model fast = this.fast;
+        return fast == null ? null : fast.name;
+    }
+
+    private Model model(boolean fast) {
+        Model fastModel = this.fast;
+        return fast && fastModel != null ? fastModel : strong;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
     }
-    
+
     public String getApiKey() {
         // Return last 4 characters masked with asterisks for security
         if (apiKey.length() > 4) {
@@ -72,271 +103,256 @@ public class AIHandler {
         return "*".repeat(apiKey.length());
     }
 
+    /**
+     * Enable response caching for this handler
+     * @param responseCache The cache to use, or null to always contact the provider
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Abort the provider call a thread is waiting on, e.g. when the user presses Ctrl-C.
+     * The thread's sendQuery returns {@link #CANCELLED_RESPONSE} and its sendStructuredQuery returns null.
+     * @param caller The thread that sent the query
+     * @return true if the thread was waiting on a provider
+     */
+    public static boolean cancel(Thread caller) {
+        return HttpTransport.abort(caller);
+    }
+
+    /**
+     * @param fast Whether the query would go to the fast model
+     * @param structured Whether the query would be sent with {@link #sendStructuredQuery}
+     * @return true if the response cache already holds the answer, so sending the query costs no round trip
+     */
+    public boolean isCached(String query, boolean fast, boolean structured) {
+        if (responseCache == null) {
+            return false;
+        }
+        String cached = responseCache.get(cacheKey(model(fast), structured ? STRUCTURED_CACHE_PREFIX + query : query));
+        return structured ? CommandPlan.fromJson(cached) != null : cached != null;
+    }
+
     /**
      * Send a query to the configured AI provider
      * @param query The query text to send
      * @return The AI's response
      */
     public String sendQuery(String query) {
-        try {
-            if (provider.equalsIgnoreCase("OpenAI")) {
-                // Validate OpenAI model
-                validateOpenAIModel();
-                return callOpenAI(query);
-            } else if (provider.equalsIgnoreCase("Gemini")) {
-                // Validate Gemini model
-                validateGeminiModel();
-                return callGemini(query);
-            } else {
-                return "Unknown provider: " + provider + ". Supported providers are OpenAI and Gemini.";
-            }
-        } catch (IllegalArgumentException e) {
-            return "[ERROR] Invalid configuration: " + e.getMessage();
-        } catch (Exception e) {
-            return "[ERROR] Failed to contact AI provider: " + e.getMessage() + 
-                   ". Please check your internet connection and API key.";
-        }
+        return sendQuery(query, false);
     }
-    
+
     /**
-     * Validate that the OpenAI model is valid
+     * Send a query to the configured AI provider
+     * @param query The query text to send
+     * @param fast Whether the fast model, if one is configured, is good enough for this query
+     * @return The AI's response
      */
-    private void validateOpenAIModel() {
-        if (!VALID_OPENAI_MODELS.contains(model.toLowerCase())) {
-            // Check if it's a known model but with wrong casing
-            for (String validModel : VALID_OPENAI_MODELS) {
-                if (validModel.equalsIgnoreCase(model)) {
-                    model = validModel;
-                    System.out.println("Note: Corrected model casing to '" + model + "'");
-                    return;
-                }
-            }
-            
-            // If not in list but looks like a valid format, just warn but continue
-            if (model.startsWith("gpt-")) {
-                System.out.println("Warning: Using unofficial OpenAI model '" + model + "'. " +
-                                  "This may not work correctly.");
-            } else {
-                throw new IllegalArgumentException("Invalid OpenAI model: " + model + 
-                                                 ". Valid models include: " + String.join(", ", VALID_OPENAI_MODELS));
-            }
-        }
+    public String sendQuery(String query, boolean fast) {
+        return sendQuery(query, fast, null);
     }
-    
+
     /**
-     * Validate that the Gemini model is valid
+     * Send a query to the configured AI provider and account for it in a session's usage
+     * @param query The query text to send
+     * @param fast Whether the fast model, if one is configured, is good enough for this query
+     * @param usage Receives the call's latency and tokens; may be null. Cache hits cost no tokens.
+     * @return The AI's response
      */
-    private void validateGeminiModel() {
-        if (!VALID_GEMINI_MODELS.contains(model.toLowerCase())) {
-            // Check if it's a known model but with wrong casing
-            for (String validModel : VALID_GEMINI_MODELS) {
-                if (validModel.equalsIgnoreCase(model)) {
-                    model = validModel;
-                    System.out.println("Note: Corrected model casing to '" + model + "'");
-                    return;
-                }
+    public String sendQuery(String query, boolean fast, UsageTracker usage) {
+        Model model = model(fast);
+        long start = System.nanoTime();
+        boolean cacheHit = false;
+        try {
+            if (responseCache == null) {
+                return dispatchQuery(model, query, usage);
+            }
+
+            String cacheKey = cacheKey(model, query);
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                cacheHit = true;
+                return cached;
             }
-            
-            // If not in list but looks like a valid format, just warn but continue
-            if (model.startsWith("gemini-")) {
-                System.out.println("Warning: Using unofficial Gemini model '" + model + "'. " +
-                                  "This may not work correctly.");
-            } else {
-                throw new IllegalArgumentException("Invalid Gemini model: " + model + 
-                                                 ". Valid models include: " + String.join(", ", VALID_GEMINI_MODELS));
+
+            String response = dispatchQuery(model, query, usage);
+            if (ResponseCache.isCacheable(response)) {
+                responseCache.put(cacheKey, response);
+            }
+            return response;
+        } finally {
+            Metrics.AI_QUERY.recordSince(start);
+            if (usage != null) {
+                usage.recordCall(System.nanoTime() - start, cacheHit);
+            }
+            if (Tracer.isEnabled()) {
+                Tracer.span("ai_query", "ai", start, "provider", provider, "model", model.name,
+                            "prompt_chars", query.length(), "cache_hit", cacheHit);
             }
         }
     }
 
     /**
-     * Call the OpenAI API
-     * @param query The query to send
-     * @return The AI's response
+     * Send a query and have the provider answer with a typed command plan instead of free text
+     * @param query The query text to send; format instructions are supplied by the schema
+     * @return The parsed plan, or null if the provider has no structured-output mode or the
+     *         answer could not be parsed, in which case the caller should fall back to {@link #sendQuery}
      */
-    private String callOpenAI(String query) throws IOException, URISyntaxException {
-        URI uri = new URI("https://api.openai.com/v1/chat/completions");
-        HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Authorization", "Bearer " + apiKey);
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-        
-        // Clean the query to prevent JSON errors
-        String cleanedQuery = query.replace("\\", "\\\\")
-                               .replace("\"", "\\\"")
-                               .replace("\n", "\\n")
-                               .replace("\r", "\\r")
-                               .replace("\t", "\\t");
-        
-        String payload = "{" +
-                "\"model\": \"" + model + "\"," +
-                "\"messages\": [{\"role\": \"user\", \"content\": \"" + cleanedQuery + "\"}]," +
-                "\"max_tokens\": 1024," +
-                "\"temperature\": 0.2" +
-                "}";
-                
-        try (OutputStream os = conn.getOutputStream()) {
-            os.write(payload.getBytes());
-        }
-        
-        int status = conn.getResponseCode();
-        
-        // Handle error responses
-        if (status < 200 || status >= 300) {
-            try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                StringBuilder errorResponse = new StringBuilder();
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    errorResponse.append(line);
-                }
-                return "[ERROR] OpenAI API error (status " + status + "): " + errorResponse.toString();
+    public CommandPlan sendStructuredQuery(String query) {
+        return sendStructuredQuery(query, false);
+    }
+
+    /**
+     * Send a query and have the provider answer with a typed command plan instead of free text
+     * @param query The query text to send; format instructions are supplied by the schema
+     * @param fast Whether the fast model, if one is configured, is good enough for this query
+     * @return The parsed plan, or null if the provider has no structured-output mode or the
+     *         answer could not be parsed
+     */
+    public CommandPlan sendStructuredQuery(String query, boolean fast) {
+        return sendStructuredQuery(query, fast, null);
+    }
+
+    /**
+     * Send a query for a typed command plan and account for it in a session's usage
+     * @param query The query text to send; format instructions are supplied by the schema
+     * @param fast Whether the fast model, if one is configured, is good enough for this query
+     * @param usage Receives the call's latency and tokens; may be null
+     * @return The parsed plan, or null if the provider has no structured-output mode or the
+     *         answer could not be parsed
+     */
+    public CommandPlan sendStructuredQuery(String query, boolean fast, UsageTracker usage) {
+        Model model = model(fast);
+        long start = System.nanoTime();
+        boolean[] cacheHit = new boolean[1];
+        try {
+            return structuredQuery(model, query, usage, cacheHit);
+        } finally {
+            Metrics.AI_QUERY.recordSince(start);
+            if (usage != null) {
+                usage.recordCall(System.nanoTime() - start, cacheHit[0]);
+            }
+            if (Tracer.isEnabled()) {
+                Tracer.span("ai_query_structured", "ai", start, "provider", provider, "model", model.name,
+                            "prompt_chars", query.length());
             }
         }
-        
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = in.readLine()) != null) {
-                response.append(line);
+    }
+
+    private CommandPlan structuredQuery(Model model, String query, UsageTracker usage, boolean[] cacheHit) {
+        String cacheKey = null;
+        if (responseCache != null) {
+            cacheKey = cacheKey(model, STRUCTURED_CACHE_PREFIX + query);
+            CommandPlan cached = CommandPlan.fromJson(responseCache.get(cacheKey));
+            if (cached != null) {
+                cacheHit[0] = true;
+                return cached;
             }
-            
-            String resp = response.toString();
-            
-            // Extract the content from the OpenAI response
-            int idx = resp.indexOf("\"content\":");
-            if (idx != -1) {
-                int start = resp.indexOf('"', idx + 11) + 1;
-                int end = findMatchingClosingQuote(resp, start);
-                if (start > 0 && end > start) {
-                    return resp.substring(start, end)
-                           .replaceAll("\\\\n", "\n")
-                           .replaceAll("\\\\\"", "\"")
-                           .replaceAll("\\\\t", "\t")
-                           .replaceAll("\\\\r", "\r");
+        }
+        if (providerImpl == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean cancelled = false;
+        try {
+            validate(model);
+            TokenUsage[] reported = new TokenUsage[1];
+            String json = providerImpl.queryStructured(
+                new ProviderSettings(model.name, apiKey, baseUrl, TEMPERATURE, MAX_TOKENS, u -> reported[0] = u),
+                query, CommandPlan.jsonSchema());
+            recordTokens(reported[0], query, json, usage);
+            CommandPlan plan = CommandPlan.fromJson(json);
+            if (plan != null) {
+                failed = false;
+                if (cacheKey != null) {
+                    responseCache.put(cacheKey, json);
                 }
             }
-            
-            // If we couldn't extract the response, return the full response for debugging
-            return "[DEBUG] OpenAI response parsing error. Raw response: " + resp;
+            return plan;
+        } catch (HttpTransport.CancelledException e) {
+            cancelled = true;
+            return null;
+        } catch (Exception e) {
+            return null;
+        } finally {
+            recordCall(start, failed, cancelled);
         }
     }
 
     /**
-     * Call the Gemini API
-     * @param query The query to send
-     * @return The AI's response
+     * Key answers by the endpoint and by the model name the provider is actually sent, so two servers serving
+     * the same model don't share answers and an answer is found again after validation corrects the name
      */
-    private String callGemini(String query) throws IOException, URISyntaxException {
-        URI uri = new URI("https://generativelanguage.googleapis.com/v1beta/models/" + 
-                          model + ":generateContent?key=" + apiKey);
-        HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-        
-        // Clean the query to prevent JSON errors
-        String cleanedQuery = query.replace("\\", "\\\\")
-                               .replace("\"", "\\\"")
-                               .replace("\n", "\\n")
-                               .replace("\r", "\\r")
-                               .replace("\t", "\\t");
-        
-        String payload = "{" +
-                "\"contents\": [{\"parts\":[{\"text\": \"" + cleanedQuery + "\"}]}]," +
-                "\"generationConfig\": {" +
-                "  \"temperature\": 0.2," +
-                "  \"maxOutputTokens\": 1024" +
-                "}" +
-                "}";
-                
-        try (OutputStream os = conn.getOutputStream()) {
-            os.write(payload.getBytes());
-        }
-        
-        int status = conn.getResponseCode();
-        
-        // Handle error responses
-        if (status < 200 || status >= 300) {
-            try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                StringBuilder errorResponse = new StringBuilder();
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    errorResponse.append(line);
-                }
-                return "[ERROR] Gemini API error (status " + status + "): " + errorResponse.toString();
+    private String cacheKey(Model model, String prompt) {
+        if (providerImpl != null) {
+            try {
+                validate(model);
+            } catch (IllegalArgumentException e) {
+                // Sending the query reports the invalid model; its error answer is never cached
             }
         }
-        
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = in.readLine()) != null) {
-                response.append(line);
-            }
-            
-            String resp = response.toString();
-            
-            // Try multiple patterns to extract the response text
-            
-            // First pattern: look for "text" field in the response
-            int idx = resp.indexOf("\"text\":");
-            if (idx != -1) {
-                int start = resp.indexOf('"', idx + 7) + 1;
-                int end = findMatchingClosingQuote(resp, start);
-                if (start > 0 && end > start) {
-                    return resp.substring(start, end)
-                           .replaceAll("\\\\n", "\n")
-                           .replaceAll("\\\\\"", "\"")
-                           .replaceAll("\\\\t", "\t")
-                           .replaceAll("\\\\r", "\r");
-                }
-            }
-            
-            // Second pattern: try to find any "content" field
-            idx = resp.indexOf("\"content\":");
-            if (idx != -1) {
-                int start = resp.indexOf('"', idx + 11) + 1;
-                int end = findMatchingClosingQuote(resp, start);
-                if (start > 0 && end > start) {
-                    return resp.substring(start, end)
-                           .replaceAll("\\\\n", "\n")
-                           .replaceAll("\\\\\"", "\"")
-                           .replaceAll("\\\\t", "\t")
-                           .replaceAll("\\\\r", "\r");
-                }
-            }
-            
-            // Last resort: find any field that might contain the response text
-            idx = resp.indexOf("\"value\":");
-            if (idx != -1) {
-                int start = resp.indexOf('"', idx + 8) + 1;
-                int end = findMatchingClosingQuote(resp, start);
-                if (start > 0 && end > start) {
-                    return resp.substring(start, end)
-                           .replaceAll("\\\\n", "\n")
-                           .replaceAll("\\\\\"", "\"")
-                           .replaceAll("\\\\t", "\t")
-                           .replaceAll("\\\\r", "\r");
-                }
+        return ResponseCache.key(provider, baseUrl, model.name, TEMPERATURE, prompt);
+    }
+
+    private void validate(Model model) {
+        if (!model.validated) {
+            model.name = providerImpl.validateModel(model.name);
+            model.validated = true;
+        }
+    }
+
+    private String dispatchQuery(Model model, String query, UsageTracker usage) {
+        if (providerImpl == null) {
+            return "Unknown provider: " + provider + ". Supported providers are " +
+                   String.join(", ", AIProviders.names()) + ".";
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean cancelled = false;
+        try {
+            validate(model);
+            TokenUsage[] reported = new TokenUsage[1];
+            String response = providerImpl.query(
+                new ProviderSettings(model.name, apiKey, baseUrl, TEMPERATURE, MAX_TOKENS, u -> reported[0] = u), query);
+            failed = response.startsWith("[ERROR]") || response.startsWith("[DEBUG]");
+            if (!failed) {
+                recordTokens(reported[0], query, response, usage);
             }
-            
-            // If all else fails, return the full response for debugging
-            return "[DEBUG] Raw Gemini response: " + resp;
+            return response;
+        } catch (HttpTransport.CancelledException e) {
+            cancelled = true;
+            return CANCELLED_RESPONSE;
+        } catch (IllegalArgumentException e) {
+            return "[ERROR] Invalid configuration: " + e.getMessage();
+        } catch (Exception e) {
+            return "[ERROR] Failed to contact AI provider: " + e.getMessage() +
+                   ". Please check your internet connection and API key.";
+        } finally {
+            recordCall(start, failed, cancelled);
         }
     }
-    
+
     /**
-     * Find the matching closing quote in a string, properly handling escaped quotes
-     * @param str The string to search
-     * @param startPos The position after the opening quote
-     * @return The position of the closing quote
+     * Account for a provider call; a cancelled call says nothing about the provider's latency or health
      */
-    private int findMatchingClosingQuote(String str, int startPos) {
-        for (int i = startPos; i < str.length(); i++) {
-            if (str.charAt(i) == '"' && (i == 0 || str.charAt(i - 1) != '\\')) {
-                return i;
-            }
+    private void recordCall(long start, boolean failed, boolean cancelled) {
+        if (!cancelled) {
+            ProviderMetrics.forProvider(providerImpl.getName()).recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Account for the tokens of a successful call, estimating them if the provider didn't report any
+     */
+    private void recordTokens(TokenUsage reported, String query, String response, UsageTracker usage) {
+        TokenUsage tokens = reported != null ? reported : TokenUsage.estimate(query, response);
+        ProviderMetrics.forProvider(providerImpl.getName()).recordTokens(tokens);
+        if (usage != null) {
+            usage.recordTokens(tokens);
         }
-        return str.length() - 1;
     }
 }
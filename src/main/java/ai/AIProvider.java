@@ -0,0 +1,57 @@
+package ai;
+
+import java.io.IOException;
+import org.json.JSONObject;
+
+/**
+ * Service provider interface for AI backends.
+ * Implementations are discovered with {@link java.util.ServiceLoader} from
+ * META-INF/services/ai.AIProvider, so new backends can be added without touching the CLI.
+ * HTTP backends should extend {@link HttpAIProvider}, which supplies the shared transport,
+ * error handling, parsing helpers and metrics.
+ */
+public interface AIProvider {
+    /**
+     * @return The provider name used in the config file, e.g. "OpenAI"
+     */
+    String getName();
+
+    /**
+     * Map a common misspelling of a model name to the real one
+     * @param model The model name as configured
+     * @return The corrected model name, or the input if no correction applies
+     */
+    default String correctModel(String model) {
+        return model;
+    }
+
+    /**
+     * Validate a model name before the first request
+     * @param model The model name to validate
+     * @return The model name to use, possibly with corrected casing
+     * @throws IllegalArgumentException if the model cannot be used with this provider
+     */
+    default String validateModel(String model) {
+        return model;
+    }
+
+    /**
+     * Send a prompt and return the answer text
+     * @param settings Model, credentials and sampling settings for this call
+     * @param prompt The prompt to send
+     * @return The AI's response, or an "[ERROR] ..." message for provider-side failures
+     */
+    String query(ProviderSettings settings, String prompt) throws IOException;
+
+    /**
+     * Send a prompt and have the provider constrain the answer to a JSON schema
+     * @param settings Model, credentials and sampling settings for this call
+     * @param prompt The prompt to send
+     * @param schema JSON schema the answer must follow
+     * @return The answer as JSON text, or null if this provider has no structured-output mode
+     * @throws IOException if the provider could not be reached or returned an error
+     */
+    default String queryStructured(ProviderSettings settings, String prompt, JSONObject schema) throws IOException {
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the {@link AIProvider}s available on the class path
+ */
+public final class AIProviders {
+    private static volatile Map<String, AIProvider> providers;
+
+    private AIProviders() {
+    }
+
+    /**
+     * @param name Provider name, case-insensitive
+     * @return The provider, or null if none is registered under that name
+     */
+    public static AIProvider find(String name) {
+        return name == null ? null : load().get(name.toLowerCase());
+    }
+
+    /**
+     * @return Names of all registered providers, in discovery order
+     */
+    public static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (AIProvider provider : load().values()) {
+            names.add(provider.getName());
+        }
+        return names;
+    }
+
+    private static Map<String, AIProvider> load() {
+        Map<String, AIProvider> loaded = providers;
+        if (loaded == null) {
+            synchronized (AIProviders.class) {
+                loaded = providers;
+                if (loaded == null) {
+                    Map<String, AIProvider> byName = new LinkedHashMap<>();
+                    for (AIProvider provider : ServiceLoader.load(AIProvider.class, AIProviders.class.getClassLoader())) {
+                        byName.putIfAbsent(provider.getName().toLowerCase(), provider);
+                    }
+                    loaded = Collections.unmodifiableMap(byName);
+                    providers = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,122 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Typed answer of a structured-output query: the commands to run plus a resolution verdict
+ */
+public class CommandPlan {
+    private final List<PlannedCommand> commands;
+    private final boolean resolved;
+    private final String resolution;
+
+    public CommandPlan(List<PlannedCommand> commands, boolean resolved, String resolution) {
+        this.commands = Collections.unmodifiableList(new ArrayList<>(commands));
+        this.resolved = resolved;
+        this.resolution = resolution;
+    }
+
+    public List<PlannedCommand> getCommands() {
+        return commands;
+    }
+
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * @return The AI's explanation of the verdict, possibly empty
+     */
+    public String getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return This plan in the format of {@link #jsonSchema()}, readable by {@link #fromJson}
+     */
+    public JSONObject toJson() {
+        JSONArray items = new JSONArray();
+        for (PlannedCommand command : commands) {
+            items.put(new JSONObject()
+                .put("command", command.getCommand())
+                .put("purpose", command.getPurpose())
+                .put("readOnly", command.isReadOnly()));
+        }
+        return new JSONObject().put("commands", items).put("resolved", resolved).put("resolution", resolution);
+    }
+
+    /**
+     * JSON schema every structured answer must follow.
+     * Written in the strict subset (all properties required, no extra properties)
+     * so it can be handed to providers that enforce schemas.
+     */
+    public static JSONObject jsonSchema() {
+        JSONObject command = new JSONObject()
+            .put("type", "object")
+            .put("properties", new JSONObject()
+                .put("command", new JSONObject().put("type", "string")
+                    .put("description", "A single shell command to run"))
+                .put("purpose", new JSONObject().put("type", "string")
+                    .put("description", "Why this command helps"))
+                .put("readOnly", new JSONObject().put("type", "boolean")
+                    .put("description", "True if the command does not modify the system")))
+            .put("required", new JSONArray().put("command").put("purpose").put("readOnly"))
+            .put("additionalProperties", false);
+
+        return new JSONObject()
+            .put("type", "object")
+            .put("properties", new JSONObject()
+                .put("commands", new JSONObject().put("type", "array").put("items", command))
+                .put("resolved", new JSONObject().put("type", "boolean")
+                    .put("description", "True if running these commands resolves the problem"))
+                .put("resolution", new JSONObject().put("type", "string")
+                    .put("description", "Why the problem is or is not resolved")))
+            .put("required", new JSONArray().put("commands").put("resolved").put("resolution"))
+            .put("additionalProperties", false);
+    }
+
+    /**
+     * Parse a structured answer
+     * @param json JSON text following {@link #jsonSchema()}, optionally wrapped in a markdown code fence
+     * @return The parsed plan, or null if the text is not a valid plan
+     */
+    public static CommandPlan fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        String text = json.trim();
+        if (text.startsWith("```")) {
+            // Some models wrap JSON in a code fence even when asked not to
+            int start = text.indexOf('\n');
+            int end = text.lastIndexOf("```");
+            if (start == -1 || end <= start) {
+                return null;
+            }
+            text = text.substring(start + 1, end).trim();
+        }
+
+        try {
+            JSONObject root = new JSONObject(text);
+            JSONArray items = root.getJSONArray("commands");
+            List<PlannedCommand> commands = new ArrayList<>();
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.getJSONObject(i);
+                String command = item.getString("command").trim();
+                if (command.isEmpty()) {
+                    continue;
+                }
+                commands.add(new PlannedCommand(command,
+                                                item.optString("purpose", "No explanation provided"),
+                                                item.optBoolean("readOnly", false)));
+            }
+            return new CommandPlan(commands, root.optBoolean("resolved", false), root.optString("resolution", ""));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
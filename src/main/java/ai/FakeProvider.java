@@ -0,0 +1,54 @@
+package ai;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Zero-latency in-process provider for load tests and offline demos.
+ * Answers diagnostic prompts with harmless read-only commands and solution
+ * prompts with a resolved verdict, without any network access.
+ * The same canned answers are the default script of the load-test MockLLMServer.
+ */
+public class FakeProvider implements AIProvider {
+    public static final String DIAGNOSTIC_RESPONSE =
+        "COMMAND: uptime\n" +
+        "PURPOSE: Check load average and how long the system has been running\n" +
+        "COMMAND: df -h\n" +
+        "PURPOSE: Check free disk space on all mounted filesystems\n";
+
+    public static final String SOLUTION_RESPONSE =
+        "COMMAND: echo no changes needed\n" +
+        "EXPLANATION: Canned answers never propose changes to the system\n" +
+        "PROBLEM_RESOLVED: YES";
+
+    @Override
+    public String getName() {
+        return "Fake";
+    }
+
+    @Override
+    public String query(ProviderSettings settings, String prompt) {
+        return prompt.contains("PROBLEM_RESOLVED") ? SOLUTION_RESPONSE : DIAGNOSTIC_RESPONSE;
+    }
+
+    @Override
+    public String queryStructured(ProviderSettings settings, String prompt, JSONObject schema) {
+        JSONArray commands = new JSONArray();
+        boolean solution = prompt.contains("resolved");
+        if (solution) {
+            commands.put(plannedCommand("echo no changes needed", "Canned answers never propose changes to the system"));
+        } else {
+            commands.put(plannedCommand("uptime", "Check load average and how long the system has been running"));
+            commands.put(plannedCommand("df -h", "Check free disk space on all mounted filesystems"));
+        }
+        return new JSONObject()
+            .put("commands", commands)
+            .put("resolved", solution)
+            .put("resolution", solution ? "Nothing to fix" : "")
+            .toString();
+    }
+
+    private static JSONObject plannedCommand(String command, String purpose) {
+        return new JSONObject().put("command", command).put("purpose", purpose).put("readOnly", true);
+    }
+}
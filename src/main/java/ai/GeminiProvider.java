@@ -0,0 +1,140 @@
+package ai;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Google Gemini generateContent provider
+ */
+public class GeminiProvider extends HttpAIProvider {
+    static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com/v1beta";
+
+    // Valid Gemini models
+    private static final List<String> VALID_MODELS = Arrays.asList(
+        "gemini-pro", "gemini-1.0-pro", "gemini-1.5-pro", "gemini-1.5-flash", "gemini-ultra"
+    );
+
+    // Model autocorrection mappings
+    private static final Map<String, String> MODEL_CORRECTIONS = Map.of(
+        "gemini", "gemini-pro",
+        "gemini-1.5", "gemini-1.5-pro",
+        "gemini-1.0", "gemini-pro",
+        "gemini-ultra-vision", "gemini-ultra"
+    );
+
+    @Override
+    public String getName() {
+        return "Gemini";
+    }
+
+    @Override
+    public String correctModel(String model) {
+        return MODEL_CORRECTIONS.getOrDefault(model.toLowerCase(), model);
+    }
+
+    @Override
+    public String validateModel(String model) {
+        return checkModel(model, VALID_MODELS, "gemini-");
+    }
+
+    @Override
+    protected ProviderRequest buildRequest(ProviderSettings settings, String prompt) {
+        JSONObject generationConfig = new JSONObject()
+            .put("temperature", settings.getTemperature())
+            .put("maxOutputTokens", settings.getMaxTokens());
+        return buildRequest(settings, prompt, generationConfig);
+    }
+
+    @Override
+    protected ProviderRequest buildStructuredRequest(ProviderSettings settings, String prompt, JSONObject schema) {
+        JSONObject generationConfig = new JSONObject()
+            .put("temperature", settings.getTemperature())
+            .put("maxOutputTokens", settings.getMaxTokens())
+            .put("responseMimeType", "application/json")
+            .put("responseSchema", toGeminiSchema(schema));
+        return buildRequest(settings, prompt, generationConfig);
+    }
+
+    private ProviderRequest buildRequest(ProviderSettings settings, String prompt, JSONObject generationConfig) {
+        String base = settings.getBaseUrl() == null || settings.getBaseUrl().isBlank()
+            ? DEFAULT_BASE_URL : settings.getBaseUrl().trim();
+        while (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        String url = base + "/models/" + settings.getModel() + ":generateContent?key=" +
+                     URLEncoder.encode(settings.getApiKey(), StandardCharsets.UTF_8);
+        
+        JSONObject payload = new JSONObject()
+            .put("contents", new JSONArray().put(new JSONObject()
+                .put("parts", new JSONArray().put(new JSONObject().put("text", prompt)))))
+            .put("generationConfig", generationConfig);
+        
+        // Google front ends accept gzip-encoded request bodies
+        return new ProviderRequest(url, payload.toString()).compressible();
+    }
+
+    @Override
+    protected String parseResponse(String body) {
+        // Try multiple patterns to extract the response text: the "text" field first,
+        // then any "content" field, and as a last resort any "value" field
+        String text = ResponseParser.extractStringField(body, "text");
+        if (text == null) {
+            text = ResponseParser.extractStringField(body, "content");
+        }
+        if (text == null) {
+            text = ResponseParser.extractStringField(body, "value");
+        }
+        return text;
+    }
+
+    @Override
+    protected TokenUsage parseUsage(String body) {
+        long prompt = ResponseParser.extractLongField(body, "promptTokenCount");
+        // Absent when the model produced no candidate text
+        long completion = ResponseParser.extractLongField(body, "candidatesTokenCount");
+        return prompt < 0 ? null : new TokenUsage(prompt, Math.max(0, completion), false);
+    }
+
+    @Override
+    protected String parseStructuredResponse(String body) {
+        try {
+            return new JSONObject(body).getJSONArray("candidates").getJSONObject(0)
+                .getJSONObject("content").getJSONArray("parts").getJSONObject(0).getString("text");
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gemini takes an OpenAPI-style schema: upper-case type names and no additionalProperties
+     */
+    static JSONObject toGeminiSchema(JSONObject schema) {
+        JSONObject converted = new JSONObject();
+        for (String key : schema.keySet()) {
+            Object value = schema.get(key);
+            if (key.equals("additionalProperties")) {
+                continue;
+            } else if (key.equals("type")) {
+                converted.put(key, value.toString().toUpperCase());
+            } else if (key.equals("properties")) {
+                JSONObject properties = new JSONObject();
+                JSONObject source = (JSONObject) value;
+                for (String name : source.keySet()) {
+                    properties.put(name, toGeminiSchema(source.getJSONObject(name)));
+                }
+                converted.put(key, properties);
+            } else if (key.equals("items")) {
+                converted.put(key, toGeminiSchema((JSONObject) value));
+            } else {
+                converted.put(key, value);
+            }
+        }
+        return converted;
+    }
+}
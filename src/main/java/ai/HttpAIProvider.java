@@ -0,0 +1,126 @@
+package ai;
+
+import java.io.IOException;
+import java.util.List;
+import metrics.Tracer;
+import org.json.JSONObject;
+
+/**
+ * Base class for providers reached over HTTP.
+ * Subclasses only describe how a prompt maps to a request and how a response maps back
+ * to answer text; connections, compression, error bodies and metrics are shared.
+ */
+public abstract class HttpAIProvider implements AIProvider {
+    /**
+     * Build the request for a prompt
+     */
+    protected abstract ProviderRequest buildRequest(ProviderSettings settings, String prompt);
+
+    /**
+     * Extract the answer text from a successful response body
+     * @return The answer text, or null if the body has an unexpected shape
+     */
+    protected abstract String parseResponse(String body);
+
+    /**
+     * Build a request whose answer is constrained to a JSON schema
+     * @return The request, or null if the provider has no structured-output mode
+     */
+    protected ProviderRequest buildStructuredRequest(ProviderSettings settings, String prompt, JSONObject schema) {
+        return null;
+    }
+
+    /**
+     * Extract the JSON answer from a successful structured response body
+     * @return The JSON answer text, or null if the body has an unexpected shape
+     */
+    protected String parseStructuredResponse(String body) {
+        return null;
+    }
+
+    /**
+     * Extract the token usage from a successful response body
+     * @return The usage, or null if the body doesn't report it
+     */
+    protected TokenUsage parseUsage(String body) {
+        return null;
+    }
+
+    @Override
+    public final String query(ProviderSettings settings, String prompt) throws IOException {
+        ProviderResponse response = post(buildRequest(settings, prompt));
+        if (!response.isSuccess()) {
+            return "[ERROR] " + getName() + " API error (status " + response.getStatus() + "): " + response.getBody();
+        }
+        
+        String text = parseResponse(response.getBody());
+        if (text == null) {
+            // If we couldn't extract the response, return the full response for debugging
+            return "[DEBUG] " + getName() + " response parsing error. Raw response: " + response.getBody();
+        }
+        settings.reportUsage(parseUsage(response.getBody()));
+        return text;
+    }
+
+    /**
+     * Shared model-name validation against a list of known models
+     * @param model The model to check
+     * @param validModels Known model names, lower case
+     * @param prefix Prefix of unofficial but plausible model names, which are accepted with a warning
+     * @return The model name to use
+     */
+    protected String checkModel(String model, List<String> validModels, String prefix) {
+        if (validModels.contains(model.toLowerCase())) {
+            return model;
+        }
+        
+        // Check if it's a known model but with wrong casing
+        for (String validModel : validModels) {
+            if (validModel.equalsIgnoreCase(model)) {
+                System.out.println("Note: Corrected model casing to '" + validModel + "'");
+                return validModel;
+            }
+        }
+        
+        // If not in list but looks like a valid format, just warn but continue
+        if (model.startsWith(prefix)) {
+            System.out.println("Warning: Using unofficial " + getName() + " model '" + model + "'. " +
+                              "This may not work correctly.");
+            return model;
+        }
+        throw new IllegalArgumentException("Invalid " + getName() + " model: " + model + 
+                                         ". Valid models include: " + String.join(", ", validModels));
+    }
+
+    @Override
+    public final String queryStructured(ProviderSettings settings, String prompt, JSONObject schema) throws IOException {
+        ProviderRequest request = buildStructuredRequest(settings, prompt, schema);
+        if (request == null) {
+            return null;
+        }
+        
+        ProviderResponse response = post(request);
+        if (!response.isSuccess()) {
+            throw new IOException(getName() + " API error (status " + response.getStatus() + "): " + response.getBody());
+        }
+        
+        String json = parseStructuredResponse(response.getBody());
+        if (json == null) {
+            throw new IOException(getName() + " structured response parsing error. Raw response: " + response.getBody());
+        }
+        settings.reportUsage(parseUsage(response.getBody()));
+        return json;
+    }
+
+    private ProviderResponse post(ProviderRequest request) throws IOException {
+        long start = System.nanoTime();
+        ProviderResponse response = HttpTransport.post(request);
+        ProviderMetrics.forProvider(getName()).recordTransfer(response.getBytesSent(), response.getBytesReceived());
+        if (Tracer.isEnabled()) {
+            // The URL is left out on purpose: Gemini carries the API key in it
+            Tracer.span("http_post", "ai", start, "provider", getName(), "status", response.getStatus(),
+                        "bytes_sent", response.getBytesSent(), "bytes_received", response.getBytesReceived());
+        }
+        return response;
+    }
+}
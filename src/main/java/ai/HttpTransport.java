@@ -0,0 +1,223 @@
+package ai;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared HTTP transport for all {@link HttpAIProvider}s.
+ * Handles connection setup, gzip on both paths, error bodies and byte accounting.
+ */
+final class HttpTransport {
+    // Request bodies at least this large are gzip-compressed when the provider accepts it
+    static final int COMPRESSION_THRESHOLD_BYTES = 8 * 1024;
+
+    // A provider that doesn't accept the connection, or goes quiet mid-exchange, fails the call
+    // instead of hanging a batch or daemon worker; the read timeout allows for slow completions
+    static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    static final int READ_TIMEOUT_MILLIS = 120_000;
+
+    // Exchanges in progress by the thread waiting on them, so another thread can abort one
+    private static final Map<Thread, HttpURLConnection> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /**
+     * Thrown instead of the I/O error of an exchange that was aborted with {@link #abort}
+     */
+    static final class CancelledException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CancelledException(IOException cause) {
+            super("Request cancelled", cause);
+        }
+    }
+
+    private HttpTransport() {
+    }
+
+    /**
+     * POST a request and read the whole (decoded) response body
+     * @param request The request to send
+     * @return The status, body and wire byte counts of the exchange
+     * @throws CancelledException if another thread aborted the exchange
+     * @throws SocketTimeoutException if the provider didn't connect or respond in time
+     */
+    static ProviderResponse post(ProviderRequest request) throws IOException {
+        return post(request, CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS);
+    }
+
+    static ProviderResponse post(ProviderRequest request, int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+        HttpURLConnection conn;
+        try {
+            conn = (HttpURLConnection) new URI(request.getUrl()).toURL().openConnection();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid endpoint URL: " + request.getUrl(), e);
+        }
+        conn.setConnectTimeout(connectTimeoutMillis);
+        conn.setReadTimeout(readTimeoutMillis);
+        Thread caller = Thread.currentThread();
+        IN_FLIGHT.put(caller, conn);
+        try {
+            return exchange(conn, request);
+        } catch (IOException e) {
+            // abort() takes the connection out of the map before closing it
+            if (!IN_FLIGHT.remove(caller, conn)) {
+                throw new CancelledException(e);
+            }
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(caller, conn);
+        }
+    }
+
+    /**
+     * Abort the exchange a thread is waiting on; its {@link #post} then throws a {@link CancelledException}
+     * @return true if the thread was waiting on an exchange
+     */
+    static boolean abort(Thread caller) {
+        HttpURLConnection conn = IN_FLIGHT.remove(caller);
+        if (conn == null) {
+            return false;
+        }
+        // Closes the socket, which fails the caller's blocked write or read
+        conn.disconnect();
+        return true;
+    }
+
+    private static ProviderResponse exchange(HttpURLConnection conn, ProviderRequest request) throws IOException {
+        conn.setRequestMethod("POST");
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        conn.setDoOutput(true);
+
+        CountingOutputStream sent = writePayload(conn, request.getBody(), request.isCompressible());
+        int status = conn.getResponseCode();
+        boolean error = status < 200 || status >= 300;
+
+        CountingInputStream received = new CountingInputStream(error ? conn.getErrorStream() : conn.getInputStream());
+        String body;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(decode(conn, received), StandardCharsets.UTF_8))) {
+            StringBuilder response = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                response.append(line);
+            }
+            body = response.toString();
+        }
+        return new ProviderResponse(status, body, sent.count, received.count);
+    }
+
+    /**
+     * Write a JSON payload to the request body.
+     * Large payloads are gzip-compressed on the fly in chunked mode, so neither the
+     * connection nor this method ever holds the whole compressed body in memory.
+     * @param conn The connection to write to
+     * @param payload The JSON payload
+     * @param compress Whether the provider accepts gzip-encoded request bodies
+     * @return The wire-level stream, for byte accounting
+     */
+    static CountingOutputStream writePayload(HttpURLConnection conn, String payload, boolean compress) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (compress && bytes.length >= COMPRESSION_THRESHOLD_BYTES) {
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            conn.setChunkedStreamingMode(0);
+            CountingOutputStream wire = new CountingOutputStream(conn.getOutputStream());
+            try (OutputStream os = new GZIPOutputStream(wire, 8192)) {
+                os.write(bytes);
+            }
+            return wire;
+        }
+        
+        conn.setFixedLengthStreamingMode(bytes.length);
+        CountingOutputStream wire = new CountingOutputStream(conn.getOutputStream());
+        try (OutputStream os = wire) {
+            os.write(bytes);
+        }
+        return wire;
+    }
+
+    /**
+     * Open the response body, transparently decoding gzip or deflate content
+     * @param conn The connection to read from
+     * @param error Whether to read the error stream instead of the normal body
+     * @return A stream of the decoded response body
+     */
+    static InputStream openResponseStream(HttpURLConnection conn, boolean error) throws IOException {
+        return decode(conn, error ? conn.getErrorStream() : conn.getInputStream());
+    }
+
+    private static InputStream decode(HttpURLConnection conn, InputStream in) throws IOException {
+        if (in == null) {
+            return InputStream.nullInputStream();
+        }
+        
+        String encoding = conn.getContentEncoding();
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(in);
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in == null ? InputStream.nullInputStream() : in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
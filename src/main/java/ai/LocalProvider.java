@@ -0,0 +1,31 @@
+package ai;
+
+/**
+ * A self-hosted server speaking the OpenAI chat-completions protocol (llama.cpp, vLLM, ...).
+ * Local servers serve whatever model they were started with, so no whitelist or
+ * name correction applies, and a base URL is mandatory.
+ */
+public class LocalProvider extends OpenAIProvider {
+    @Override
+    public String getName() {
+        return "Local";
+    }
+
+    @Override
+    public String correctModel(String model) {
+        return model;
+    }
+
+    @Override
+    public String validateModel(String model) {
+        return model;
+    }
+
+    @Override
+    protected String endpoint(ProviderSettings settings) {
+        if (settings.getBaseUrl() == null || settings.getBaseUrl().isBlank()) {
+            throw new IllegalArgumentException("The Local provider requires a base URL, e.g. http://localhost:8080/v1");
+        }
+        return super.endpoint(settings);
+    }
+}
@@ -0,0 +1,125 @@
+package ai;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * OpenAI chat-completions provider
+ */
+public class OpenAIProvider extends HttpAIProvider {
+    static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+    private static final String PLAN_FUNCTION = "submit_command_plan";
+
+    // Valid OpenAI models
+    private static final List<String> VALID_MODELS = Arrays.asList(
+        "gpt-4", "gpt-4-turbo", "gpt-4-0125-preview", "gpt-4-1106-preview", "gpt-4-vision-preview",
+        "gpt-3.5-turbo", "gpt-3.5-turbo-0125", "gpt-3.5-turbo-1106"
+    );
+
+    // Model autocorrection mappings
+    private static final Map<String, String> MODEL_CORRECTIONS = Map.of(
+        "gpt4", "gpt-4",
+        "gpt-4-latest", "gpt-4-turbo",
+        "gpt-3.5", "gpt-3.5-turbo",
+        "gpt3.5", "gpt-3.5-turbo",
+        "gpt3", "gpt-3.5-turbo"
+    );
+
+    @Override
+    public String getName() {
+        return "OpenAI";
+    }
+
+    @Override
+    public String correctModel(String model) {
+        return MODEL_CORRECTIONS.getOrDefault(model.toLowerCase(), model);
+    }
+
+    @Override
+    public String validateModel(String model) {
+        return checkModel(model, VALID_MODELS, "gpt-");
+    }
+
+    /**
+     * @return The chat-completions URL for these settings
+     */
+    protected String endpoint(ProviderSettings settings) {
+        String base = settings.getBaseUrl() == null || settings.getBaseUrl().isBlank()
+            ? DEFAULT_BASE_URL : settings.getBaseUrl().trim();
+        while (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        return base + "/chat/completions";
+    }
+
+    @Override
+    protected ProviderRequest buildRequest(ProviderSettings settings, String prompt) {
+        JSONObject payload = new JSONObject()
+            .put("model", settings.getModel())
+            .put("messages", new JSONArray().put(new JSONObject().put("role", "user").put("content", prompt)))
+            .put("max_tokens", settings.getMaxTokens())
+            .put("temperature", settings.getTemperature());
+        
+        // Neither OpenAI nor common OpenAI-compatible servers accept compressed request bodies
+        ProviderRequest request = new ProviderRequest(endpoint(settings), payload.toString());
+        // Local servers are often started without authentication
+        if (!settings.getApiKey().isEmpty()) {
+            request.header("Authorization", "Bearer " + settings.getApiKey());
+        }
+        return request;
+    }
+
+    @Override
+    protected String parseResponse(String body) {
+        return ResponseParser.extractStringField(body, "content");
+    }
+
+    @Override
+    protected TokenUsage parseUsage(String body) {
+        long prompt = ResponseParser.extractLongField(body, "prompt_tokens");
+        long completion = ResponseParser.extractLongField(body, "completion_tokens");
+        return prompt < 0 || completion < 0 ? null : new TokenUsage(prompt, completion, false);
+    }
+
+    /**
+     * Structured answers use function calling with a forced tool choice, which unlike
+     * json_schema response formats works with every chat model including gpt-3.5-turbo
+     * and most OpenAI-compatible servers.
+     */
+    @Override
+    protected ProviderRequest buildStructuredRequest(ProviderSettings settings, String prompt, JSONObject schema) {
+        JSONObject function = new JSONObject()
+            .put("name", PLAN_FUNCTION)
+            .put("description", "Submit the commands to run and whether they resolve the problem")
+            .put("parameters", schema);
+        JSONObject payload = new JSONObject(buildRequest(settings, prompt).getBody())
+            .put("tools", new JSONArray().put(new JSONObject().put("type", "function").put("function", function)))
+            .put("tool_choice", new JSONObject().put("type", "function")
+                .put("function", new JSONObject().put("name", PLAN_FUNCTION)));
+        
+        ProviderRequest request = new ProviderRequest(endpoint(settings), payload.toString());
+        if (!settings.getApiKey().isEmpty()) {
+            request.header("Authorization", "Bearer " + settings.getApiKey());
+        }
+        return request;
+    }
+
+    @Override
+    protected String parseStructuredResponse(String body) {
+        try {
+            JSONObject message = new JSONObject(body).getJSONArray("choices").getJSONObject(0).getJSONObject("message");
+            JSONArray toolCalls = message.optJSONArray("tool_calls");
+            if (toolCalls != null && !toolCalls.isEmpty()) {
+                return toolCalls.getJSONObject(0).getJSONObject("function").getString("arguments");
+            }
+            // Servers without tool support may still answer with plain JSON content
+            return message.optString("content", null);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ai;
+
+/**
+ * A single command proposed by the AI in a structured {@link CommandPlan}
+ */
+public class PlannedCommand {
+    private final String command;
+    private final String purpose;
+    private final boolean readOnly;
+
+    public PlannedCommand(String command, String purpose, boolean readOnly) {
+        this.command = command;
+        this.purpose = purpose;
+        this.readOnly = readOnly;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return Why the command helps, as explained by the AI
+     */
+    public String getPurpose() {
+        return purpose;
+    }
+
+    /**
+     * @return Whether the AI claims the command does not modify the system
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+}
@@ -0,0 +1,78 @@
+package ai;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free call counters kept per provider for the lifetime of the JVM
+ */
+public class ProviderMetrics {
+    private static final Map<String, ProviderMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+
+    /**
+     * @param provider Provider name, case-insensitive
+     * @return The shared metrics of that provider
+     */
+    public static ProviderMetrics forProvider(String provider) {
+        return REGISTRY.computeIfAbsent(provider.toLowerCase(), name -> new ProviderMetrics());
+    }
+
+    void recordCall(long elapsedNanos, boolean failed) {
+        calls.increment();
+        latencyNanos.add(elapsedNanos);
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    void recordTransfer(long sent, long received) {
+        bytesSent.add(sent);
+        bytesReceived.add(received);
+    }
+
+    void recordTokens(TokenUsage usage) {
+        promptTokens.add(usage.getPromptTokens());
+        completionTokens.add(usage.getCompletionTokens());
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.sum();
+    }
+
+    /**
+     * @return Mean call latency in milliseconds, or 0 if no calls were made
+     */
+    public double getMeanLatencyMillis() {
+        long count = calls.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1_000_000.0 / count;
+    }
+}
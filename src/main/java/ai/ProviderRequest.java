@@ -0,0 +1,49 @@
+package ai;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An HTTP POST request described by an {@link HttpAIProvider}
+ */
+public class ProviderRequest {
+    private final String url;
+    private final String body;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private boolean compressible;
+
+    public ProviderRequest(String url, String body) {
+        this.url = url;
+        this.body = body;
+        headers.put("Content-Type", "application/json");
+    }
+
+    public ProviderRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * Mark the endpoint as accepting gzip-encoded request bodies
+     */
+    public ProviderRequest compressible() {
+        this.compressible = true;
+        return this;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public boolean isCompressible() {
+        return compressible;
+    }
+}
@@ -0,0 +1,44 @@
+package ai;
+
+/**
+ * The raw result of a {@link ProviderRequest}
+ */
+public class ProviderResponse {
+    private final int status;
+    private final String body;
+    private final long bytesSent;
+    private final long bytesReceived;
+
+    public ProviderResponse(int status, String body, long bytesSent, long bytesReceived) {
+        this.status = status;
+        this.body = body;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return Request body bytes written to the wire, after compression
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return Response body bytes read from the wire, before decompression
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+}
@@ -0,0 +1,64 @@
+package ai;
+
+import java.util.function.Consumer;
+
+/**
+ * Per-call settings handed to an {@link AIProvider}
+ */
+public class ProviderSettings {
+    private final String model;
+    private final String apiKey;
+    private final String baseUrl;
+    private final double temperature;
+    private final int maxTokens;
+    private final Consumer<TokenUsage> usageListener;
+
+    public ProviderSettings(String model, String apiKey, String baseUrl, double temperature, int maxTokens) {
+        this(model, apiKey, baseUrl, temperature, maxTokens, null);
+    }
+
+    /**
+     * @param usageListener Receives the token usage the provider reports for this call; may be null
+     */
+    public ProviderSettings(String model, String apiKey, String baseUrl, double temperature, int maxTokens,
+                            Consumer<TokenUsage> usageListener) {
+        this.model = model;
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.temperature = temperature;
+        this.maxTokens = maxTokens;
+        this.usageListener = usageListener;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * @return The configured base URL, or null to use the provider's default endpoint
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Report the token usage of this call, for providers whose responses carry it
+     */
+    public void reportUsage(TokenUsage usage) {
+        if (usageListener != null && usage != null) {
+            usageListener.accept(usage);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import util.AtomicFiles;
+
+/**
+ * Two-tier cache for AI responses.
+ * Entries are keyed on a SHA-256 digest of (provider, model, temperature, prompt),
+ * kept in a small in-memory LRU and persisted as memory-mapped files under ~/.sysai/cache.
+ */
+public class ResponseCache {
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+    public static final int DEFAULT_MEMORY_ENTRIES = 256;
+    public static final long DEFAULT_MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+    // On-disk entry layout: magic (4 bytes), created-at millis (8 bytes), payload length (4 bytes), payload
+    private static final int MAGIC = 0x53594143;
+    private static final int HEADER_BYTES = 16;
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final long maxDiskBytes;
+    private final Clock clock;
+    private final Map<String, Entry> memory;
+
+    private static final class Entry {
+        final long createdAt;
+        final String response;
+
+        Entry(long createdAt, String response) {
+            this.createdAt = createdAt;
+            this.response = response;
+        }
+    }
+
+    public ResponseCache(Path directory, int memoryEntries, long maxDiskBytes, Duration ttl) {
+        this(directory, memoryEntries, maxDiskBytes, ttl, Clock.systemUTC());
+    }
+
+    ResponseCache(Path directory, int memoryEntries, long maxDiskBytes, Duration ttl, Clock clock) {
+        this.directory = directory;
+        this.ttlMillis = ttl.toMillis();
+        this.maxDiskBytes = maxDiskBytes;
+        this.clock = clock;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * Create a cache with the default limits under ~/.sysai/cache
+     */
+    public static ResponseCache createDefault() {
+        return new ResponseCache(defaultDirectory(), DEFAULT_MEMORY_ENTRIES, DEFAULT_MAX_DISK_BYTES, DEFAULT_TTL);
+    }
+
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".sysai", "cache");
+    }
+
+    /**
+     * Build the content-addressed key for a request
+     * @param baseUrl The endpoint the request goes to, or null for the provider's default
+     * @return Hex-encoded SHA-256 digest of the request parameters
+     */
+    public static String key(String provider, String baseUrl, String model, double temperature, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Separate fields with a NUL so ("ab", "c") and ("a", "bc") hash differently
+            String material = provider.toLowerCase() + '\0' + (baseUrl == null ? "" : baseUrl) + '\0' + model + '\0' +
+                              temperature + '\0' + prompt;
+            byte[] hash = digest.digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Only successful answers are worth caching; errors and debug dumps must be retried
+     */
+    public static boolean isCacheable(String response) {
+        return response != null && !response.isEmpty()
+            && !response.startsWith("[ERROR]")
+            && !response.startsWith("[DEBUG]")
+            && !response.startsWith("Unknown provider:");
+    }
+
+    /**
+     * Look up a response, first in memory and then on disk
+     * @param key Key produced by {@link #key}
+     * @return The cached response, or null on a miss or expired entry
+     */
+    public String get(String key) {
+        long now = clock.millis();
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (!isExpired(entry.createdAt, now)) {
+                    return entry.response;
+                }
+                memory.remove(key);
+            }
+        }
+
+        Entry entry = readFromDisk(key, now);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        return entry.response;
+    }
+
+    /**
+     * Store a response in both tiers
+     */
+    public void put(String key, String response) {
+        Entry entry = new Entry(clock.millis(), response);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeToDisk(key, entry);
+    }
+
+    private boolean isExpired(long createdAt, long now) {
+        return now - createdAt > ttlMillis;
+    }
+
+    private Entry readFromDisk(String key, long now) {
+        Path file = directory.resolve(key + ENTRY_SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long createdAt = readValidHeader(buffer, size);
+            if (createdAt < 0 || isExpired(createdAt, now)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            int length = buffer.getInt(12);
+            ByteBuffer payload = buffer.slice(HEADER_BYTES, length);
+            return new Entry(createdAt, StandardCharsets.UTF_8.decode(payload).toString());
+        } catch (IOException e) {
+            // A broken disk tier only costs a cache miss
+            return null;
+        }
+    }
+
+    /**
+     * @return The entry's creation time, or -1 if the header is corrupt or truncated
+     */
+    private static long readValidHeader(ByteBuffer buffer, long fileSize) {
+        if (buffer.getInt(0) != MAGIC) {
+            return -1;
+        }
+        int length = buffer.getInt(12);
+        if (length < 0 || HEADER_BYTES + (long) length != fileSize) {
+            return -1;
+        }
+        return buffer.getLong(4);
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        byte[] payload = entry.response.getBytes(StandardCharsets.UTF_8);
+        if (HEADER_BYTES + (long) payload.length > maxDiskBytes) {
+            return;
+        }
+        try {
+            // Readers must never see a half-written entry
+            AtomicFiles.write(directory.resolve(key + ENTRY_SUFFIX), temp -> {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + payload.length);
+                    buffer.putInt(MAGIC).putLong(entry.createdAt).putInt(payload.length).put(payload);
+                    buffer.force();
+                }
+            });
+            evictFromDisk();
+        } catch (IOException e) {
+            // Fall back to memory-only caching
+        }
+    }
+
+    /**
+     * Drop expired entries, then the oldest ones until the disk tier fits its size budget
+     */
+    private void evictFromDisk() throws IOException {
+        long now = clock.millis();
+        List<Path> entries = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path file : stream) {
+                if (now - Files.getLastModifiedTime(file).toMillis() > ttlMillis) {
+                    Files.deleteIfExists(file);
+                } else {
+                    entries.add(file);
+                    totalBytes += Files.size(file);
+                }
+            }
+        }
+        if (totalBytes <= maxDiskBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong(ResponseCache::lastModified));
+        for (Path file : entries) {
+            if (totalBytes <= maxDiskBytes) {
+                break;
+            }
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            totalBytes -= size;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ai;
+
+/**
+ * Lightweight extraction of string fields from provider JSON responses.
+ * Scans for the first occurrence of a field instead of building a full JSON tree,
+ * which is all the providers need to pull the answer text out of a response.
+ */
+public final class ResponseParser {
+    private ResponseParser() {
+    }
+
+    /**
+     * Extract the value of the first string field with the given name
+     * @param json The raw JSON response
+     * @param field The field name, without quotes
+     * @return The unescaped field value, or null if the field is not present
+     */
+    public static String extractStringField(String json, String field) {
+        String marker = "\"" + field + "\":";
+        int idx = json.indexOf(marker);
+        if (idx == -1) {
+            return null;
+        }
+        int start = json.indexOf('"', idx + marker.length()) + 1;
+        int end = findMatchingClosingQuote(json, start);
+        if (start > 0 && end > start) {
+            return unescape(json.substring(start, end));
+        }
+        return null;
+    }
+
+    /**
+     * Extract the value of the first integer field with the given name
+     * @param json The raw JSON response
+     * @param field The field name, without quotes
+     * @return The value, or -1 if the field is not present or not a non-negative integer
+     */
+    public static long extractLongField(String json, String field) {
+        String marker = "\"" + field + "\"";
+        int idx = json.indexOf(marker);
+        if (idx == -1) {
+            return -1;
+        }
+        int i = idx + marker.length();
+        while (i < json.length() && (json.charAt(i) == ':' || Character.isWhitespace(json.charAt(i)))) {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        for (; i < json.length() && json.charAt(i) >= '0' && json.charAt(i) <= '9' && digits < 18; i++, digits++) {
+            value = value * 10 + (json.charAt(i) - '0');
+        }
+        return digits == 0 ? -1 : value;
+    }
+
+    /**
+     * Find the matching closing quote in a string, properly handling escaped quotes
+     * @param str The string to search
+     * @param startPos The position after the opening quote
+     * @return The position of the closing quote
+     */
+    public static int findMatchingClosingQuote(String str, int startPos) {
+        for (int i = startPos; i < str.length(); i++) {
+            if (str.charAt(i) == '"' && (i == 0 || str.charAt(i - 1) != '\\')) {
+                return i;
+            }
+        }
+        return str.length() - 1;
+    }
+
+    /**
+     * Undo the JSON escapes that matter for command text
+     */
+    public static String unescape(String value) {
+        return value.replaceAll("\\\\n", "\n")
+                    .replaceAll("\\\\\"", "\"")
+                    .replaceAll("\\\\t", "\t")
+                    .replaceAll("\\\\r", "\r");
+    }
+}
@@ -0,0 +1,49 @@
+package ai;
+
+/**
+ * Prompt and completion tokens of one AI call, as reported by the provider or estimated from the text
+ */
+public class TokenUsage {
+    // Rough average for English text and shell output across common tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final long promptTokens;
+    private final long completionTokens;
+    private final boolean estimated;
+
+    public TokenUsage(long promptTokens, long completionTokens, boolean estimated) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.estimated = estimated;
+    }
+
+    /**
+     * Estimate the usage of a call whose provider doesn't report it
+     */
+    public static TokenUsage estimate(String prompt, String completion) {
+        return new TokenUsage(tokens(prompt), tokens(completion), true);
+    }
+
+    private static long tokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    /**
+     * @return true if the counts are estimated from the text rather than reported by the provider
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+}
@@ -0,0 +1,94 @@
+package ai;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+/**
+ * Running totals of AI calls, tokens and time for one session.
+ * Pass it to {@link AIHandler#sendQuery(String, boolean, UsageTracker)}; a handler shared by concurrent
+ * sessions attributes each call to the tracker it was given.
+ */
+public class UsageTracker {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private volatile boolean estimated;
+
+    void recordCall(long elapsedNanos, boolean cacheHit) {
+        calls.increment();
+        nanos.add(elapsedNanos);
+        if (cacheHit) {
+            cacheHits.increment();
+        }
+    }
+
+    void recordTokens(TokenUsage usage) {
+        promptTokens.add(usage.getPromptTokens());
+        completionTokens.add(usage.getCompletionTokens());
+        if (usage.isEstimated()) {
+            estimated = true;
+        }
+    }
+
+    /**
+     * Add the totals of another tracker, e.g. one that accounted for a call made on this session's behalf
+     */
+    public void add(UsageTracker other) {
+        calls.add(other.calls.sum());
+        cacheHits.add(other.cacheHits.sum());
+        promptTokens.add(other.promptTokens.sum());
+        completionTokens.add(other.completionTokens.sum());
+        nanos.add(other.nanos.sum());
+        if (other.estimated) {
+            estimated = true;
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.sum();
+    }
+
+    public long getTotalTokens() {
+        return promptTokens.sum() + completionTokens.sum();
+    }
+
+    /**
+     * @return true if any call's tokens were estimated because the provider didn't report them
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    public long getMillis() {
+        return nanos.sum() / 1_000_000;
+    }
+
+    public JSONObject toJson() {
+        return new JSONObject()
+            .put("aiCalls", calls.sum())
+            .put("cacheHits", cacheHits.sum())
+            .put("promptTokens", promptTokens.sum())
+            .put("completionTokens", completionTokens.sum())
+            .put("tokensEstimated", estimated)
+            .put("aiMs", getMillis());
+    }
+
+    /**
+     * @return e.g. "3 AI calls, 1200 prompt + 300 completion tokens (estimated), 2.4 s"
+     */
+    public String describe() {
+        return String.format("%d AI calls, %d prompt + %d completion tokens%s, %.1f s",
+                             calls.sum(), promptTokens.sum(), completionTokens.sum(),
+                             estimated ? " (estimated)" : "", nanos.sum() / 1e9);
+    }
+}
@@ -0,0 +1,63 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * Thin client for a running daemon
+ */
+@CommandLine.Command(name = "ask", mixinStandardHelpOptions = true,
+                     description = "Send one query to a running 'sysai daemon' and print the result")
+public class AskCommand implements Callable<Integer> {
+    @CommandLine.Parameters(arity = "1..*", description = "The problem to diagnose")
+    private String[] words;
+
+    @CommandLine.Option(names = "--socket", description = "Socket path (default: ~/.sysai/sysai.sock)")
+    private Path socket = DaemonCommand.defaultSocketPath();
+
+    @CommandLine.Option(names = "--json", description = "Print the raw JSON result")
+    private boolean json;
+
+    @Override
+    public Integer call() {
+        JSONObject result;
+        try (DaemonClient client = new DaemonClient(socket)) {
+            result = client.send(new JSONObject().put("id", "ask").put("query", String.join(" ", words)));
+        } catch (IOException e) {
+            System.err.println("Cannot reach sysai daemon at " + socket + ": " + e.getMessage());
+            return 2;
+        }
+
+        if (json) {
+            System.out.println(result.toString());
+        } else {
+            print(result);
+        }
+        return result.has("error") ? 1 : 0;
+    }
+
+    private static void print(JSONObject result) {
+        JSONArray commands = result.optJSONArray("commands");
+        if (commands != null) {
+            for (int i = 0; i < commands.length(); i++) {
+                JSONObject command = commands.getJSONObject(i);
+                System.out.println(Main.ANSI_BLUE + "[" + command.getString("phase") + ", " + command.getString("status") + "] " +
+                                   Main.ANSI_RESET + command.getString("command"));
+                System.out.println(Main.ANSI_YELLOW + "  " + command.optString("purpose") + Main.ANSI_RESET);
+                if (command.has("output")) {
+                    System.out.println(TroubleshootingSession.formatCommandOutput(command.getString("output")));
+                }
+            }
+        }
+        if (result.has("resolution")) {
+            System.out.println(Main.ANSI_GREEN + "Resolution: " + result.getString("resolution") + Main.ANSI_RESET);
+        }
+        if (result.has("error")) {
+            System.out.println(Main.ANSI_RED + result.getString("error") + Main.ANSI_RESET);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package cli;
+
+import ai.AIHandler;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * Runs many diagnose-and-suggest sessions concurrently without prompting.
+ * Reads one query per input line (either plain text or a JSON object with "query" and an optional "id")
+ * and streams one JSON result per line, in completion order.
+ */
+@CommandLine.Command(name = "batch", mixinStandardHelpOptions = true,
+                     description = "Diagnose many queries concurrently and print one JSON result per line. " +
+                                   "Safe diagnostics run automatically; solutions are suggested but never executed.")
+public class BatchCommand implements Callable<Integer> {
+    // Session progress output is discarded in batch mode; results go out as JSON
+    static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    @CommandLine.Option(names = {"-i", "--input"}, required = true, description = "JSONL file with one query per line, or - for stdin")
+    private String input;
+
+    @CommandLine.Option(names = {"-o", "--output"}, description = "Where to write JSON results (default: stdout)")
+    private Path output;
+
+    @CommandLine.Option(names = {"-c", "--concurrency"}, defaultValue = "4", description = "Number of sessions to run at once (default: ${DEFAULT-VALUE})")
+    private int concurrency;
+
+    @CommandLine.Mixin
+    private ProviderOptions providerOptions = new ProviderOptions();
+
+    @CommandLine.Mixin
+    private MetricsOptions metricsOptions = new MetricsOptions();
+
+    @CommandLine.Mixin
+    private BudgetOptions budgetOptions = new BudgetOptions();
+
+    @Override
+    public Integer call() throws Exception {
+        if (concurrency < 1) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--concurrency must be at least 1");
+        }
+
+        AIHandler aiHandler;
+        try {
+            aiHandler = providerOptions.createHandler();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        SessionBudget budget = budgetOptions.createBudget(Main.loadConfig());
+        metricsOptions.startExport();
+
+        String systemDetails = TroubleshootingSession.describeSystem();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        // Bound the number of queued queries so huge inputs are streamed rather than loaded up front
+        Semaphore inFlight = new Semaphore(concurrency * 2);
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 input.equals("-") ? System.in : Files.newInputStream(Path.of(input)), StandardCharsets.UTF_8));
+             PrintStream out = output == null ? new PrintStream(System.out, true, StandardCharsets.UTF_8)
+                                              : new PrintStream(Files.newOutputStream(output), true, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+
+                JSONObject request = parseRequest(line, lineNumber);
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        JSONObject result = runQuery(aiHandler, systemDetails, request, providerOptions.structured, budget);
+                        if (result.has("error")) {
+                            failures.incrementAndGet();
+                        }
+                        synchronized (out) {
+                            out.println(result.toString());
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            pool.shutdownNow();
+        }
+        return failures.get() == 0 ? 0 : 1;
+    }
+
+    /**
+     * Accept either {"id": ..., "query": ...} or a bare line of text
+     */
+    static JSONObject parseRequest(String line, int lineNumber) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith("{")) {
+            try {
+                JSONObject request = new JSONObject(trimmed);
+                if (!request.has("id")) {
+                    request.put("id", String.valueOf(lineNumber));
+                }
+                return request;
+            } catch (JSONException e) {
+                // Not JSON after all; treat the line as the query text
+            }
+        }
+        return new JSONObject().put("id", String.valueOf(lineNumber)).put("query", trimmed);
+    }
+
+    /**
+     * Run one session under the batch policy
+     * @return The session result, tagged with the request id, or an error object
+     */
+    static JSONObject runQuery(AIHandler aiHandler, String systemDetails, JSONObject request, boolean structured) {
+        return runQuery(aiHandler, systemDetails, request, structured, SessionBudget.UNLIMITED);
+    }
+
+    /**
+     * Run one session under the batch policy and a budget
+     * @return The session result, tagged with the request id, or an error object
+     */
+    static JSONObject runQuery(AIHandler aiHandler, String systemDetails, JSONObject request, boolean structured,
+                               SessionBudget budget) {
+        Object id = request.get("id");
+        String query = request.optString("query", "").trim();
+        if (query.isEmpty()) {
+            return new JSONObject().put("id", id).put("error", "Missing query");
+        }
+
+        try {
+            TroubleshootingSession session = new TroubleshootingSession(aiHandler, systemDetails, query,
+                                                                        structured, new BatchPolicy(), DISCARD);
+            session.setBudget(budget);
+            SessionResult result = session.run();
+            return result.toJson().put("id", id);
+        } catch (RuntimeException e) {
+            return new JSONObject().put("id", id).put("query", query).put("error", String.valueOf(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package cli;
+
+/**
+ * Non-interactive policy for batch runs: only safe diagnostics the AI proposed as commands are executed
+ * automatically, lines merely guessed from prose never are, solutions are reported but never run,
+ * and each query gets a single iteration
+ */
+public class BatchPolicy implements SessionPolicy {
+    @Override
+    public boolean confirmDangerous(String command, boolean diagnostic) {
+        return false;
+    }
+
+    @Override
+    public boolean confirmModifyingDiagnostic(String command) {
+        return false;
+    }
+
+    @Override
+    public boolean confirmSolution(String command) {
+        return false;
+    }
+
+    @Override
+    public boolean continueIteration(boolean verdictGiven) {
+        return false;
+    }
+
+    @Override
+    public boolean acceptsGuessedCommands() {
+        return false;
+    }
+
+    @Override
+    public boolean mayContinue() {
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package cli;
+
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * Per-session budget options shared by the interactive mode and the subcommands.
+ * Limits not given on the command line are taken from the "budget" object in ~/.sysai_config.json.
+ */
+public class BudgetOptions {
+    @CommandLine.Option(names = "--max-tokens", paramLabel = "N",
+                        description = "Stop a session after N prompt and completion tokens (default: from config, else unlimited)")
+    Long maxTokens;
+
+    @CommandLine.Option(names = "--max-seconds", paramLabel = "N",
+                        description = "Stop a session after N seconds of wall time (default: from config, else unlimited)")
+    Long maxSeconds;
+
+    @CommandLine.Option(names = "--max-iterations", paramLabel = "N",
+                        description = "Stop a session after N diagnose-and-solve iterations (default: from config, else unlimited)")
+    Integer maxIterations;
+
+    /**
+     * @param config The saved configuration, or null
+     * @throws CommandLine.ParameterException if a limit is negative
+     */
+    SessionBudget createBudget(JSONObject config) {
+        try {
+            return SessionBudget.fromConfig(config).override(maxTokens, maxSeconds, maxIterations);
+        } catch (IllegalArgumentException e) {
+            throw new CommandLine.ParameterException(new CommandLine(this), e.getMessage());
+        }
+    }
+}
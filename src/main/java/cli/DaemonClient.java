@@ -0,0 +1,46 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.json.JSONObject;
+
+/**
+ * Connection to a running {@link DaemonCommand}; one request line out, one result line back
+ */
+public class DaemonClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final BufferedReader in;
+    private final PrintStream out;
+
+    public DaemonClient(Path socket) throws IOException {
+        this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        this.channel.connect(UnixDomainSocketAddress.of(socket));
+        this.in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+        this.out = new PrintStream(Channels.newOutputStream(channel), true, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Send one request and wait for its result
+     * @throws IOException if the daemon closed the connection without answering
+     */
+    public JSONObject send(JSONObject request) throws IOException {
+        out.println(request.toString());
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("Daemon closed the connection");
+        }
+        return new JSONObject(line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
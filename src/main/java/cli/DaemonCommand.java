@@ -0,0 +1,150 @@
+package cli;
+
+import ai.AIHandler;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONException;
+import org.json.JSONObject;
+import picocli.CommandLine;
+import safety.SafetyChecker;
+
+/**
+ * Long-running server that keeps one warm JVM, provider connection pool and response cache,
+ * and answers newline-delimited JSON requests over a Unix domain socket.
+ * Each request line is {"query": "...", "id": ...}; each response line is a batch-style session result.
+ */
+@CommandLine.Command(name = "daemon", mixinStandardHelpOptions = true,
+                     description = "Serve queries over a Unix domain socket from one warm JVM. " +
+                                   "Requests run under the batch policy: safe diagnostics only, solutions are never executed.")
+public class DaemonCommand implements Callable<Integer> {
+    @CommandLine.Option(names = "--socket", description = "Socket path (default: ~/.sysai/sysai.sock)")
+    private Path socket = defaultSocketPath();
+
+    @CommandLine.Option(names = {"-c", "--concurrency"}, defaultValue = "8", description = "Connections served at once (default: ${DEFAULT-VALUE})")
+    private int concurrency;
+
+    @CommandLine.Mixin
+    private ProviderOptions providerOptions = new ProviderOptions();
+
+    @CommandLine.Mixin
+    private MetricsOptions metricsOptions = new MetricsOptions();
+
+    @CommandLine.Mixin
+    private BudgetOptions budgetOptions = new BudgetOptions();
+
+    private SessionBudget budget = SessionBudget.UNLIMITED;
+
+    /**
+     * The daemon runs commands on this host, so only its owner may talk to it. A socket bound in place would be
+     * open to other users until chmod, so bind it in a private (0700) directory, restrict it there and only
+     * then move it to its path.
+     */
+    static void bindPrivately(ServerSocketChannel server, Path socket) throws IOException {
+        Path staging = Files.createTempDirectory(socket.toAbsolutePath().getParent(), "sock",
+                                                 PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        Path staged = staging.resolve("s");
+        try {
+            server.bind(UnixDomainSocketAddress.of(staged));
+            Files.setPosixFilePermissions(staged, PosixFilePermissions.fromString("rw-------"));
+            Files.move(staged, socket, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staged);
+            Files.delete(staging);
+        }
+    }
+
+    static Path defaultSocketPath() {
+        return Path.of(System.getProperty("user.home"), ".sysai", "sysai.sock");
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        AIHandler aiHandler;
+        try {
+            aiHandler = providerOptions.createHandler();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        budget = budgetOptions.createBudget(Main.loadConfig());
+        metricsOptions.startExport();
+        String systemDetails = TroubleshootingSession.describeSystem();
+        // Load and initialise the safety matchers now rather than on the first request
+        SafetyChecker.isDangerous("true");
+
+        Files.createDirectories(socket.toAbsolutePath().getParent());
+        // A socket file left behind by a crashed daemon would make bind fail
+        Files.deleteIfExists(socket);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            bindPrivately(server, socket);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing left to do during shutdown
+                }
+            }));
+            System.err.println("sysai daemon listening on " + socket);
+
+            while (server.isOpen()) {
+                SocketChannel client = server.accept();
+                pool.execute(() -> serve(client, aiHandler, systemDetails));
+            }
+        } catch (AsynchronousCloseException e) {
+            // Interrupted or closed from another thread: a normal shutdown
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(socket);
+        }
+        return 0;
+    }
+
+    /**
+     * Answer every request line on one connection until the client closes it
+     */
+    private void serve(SocketChannel client, AIHandler aiHandler, String systemDetails) {
+        try (client;
+             BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(Channels.newOutputStream(client), true, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                out.println(handle(line, lineNumber, aiHandler, systemDetails).toString());
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to report back
+        }
+    }
+
+    JSONObject handle(String line, int lineNumber, AIHandler aiHandler, String systemDetails) {
+        JSONObject request = BatchCommand.parseRequest(line, lineNumber);
+        if (request.optBoolean("ping", false)) {
+            return new JSONObject().put("id", request.get("id")).put("pong", true);
+        }
+        try {
+            boolean structured = request.optBoolean("structured", providerOptions.structured);
+            return BatchCommand.runQuery(aiHandler, systemDetails, request, structured, budget);
+        } catch (JSONException e) {
+            return new JSONObject().put("id", request.opt("id")).put("error", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package cli;
+
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/**
+ * Asks the user at the terminal for every decision
+ */
+public class InteractivePolicy implements SessionPolicy {
+    private final Scanner scanner;
+    private final PrintStream out;
+
+    public InteractivePolicy(Scanner scanner, PrintStream out) {
+        this.scanner = scanner;
+        this.out = out;
+    }
+
+    @Override
+    public boolean confirmDangerous(String command, boolean diagnostic) {
+        return ask("Do you want to proceed? (yes/no): ");
+    }
+
+    @Override
+    public boolean confirmModifyingDiagnostic(String command) {
+        return ask(Main.ANSI_YELLOW + "The AI marked this diagnostic command as modifying the system. Run it? (yes/no): " + Main.ANSI_RESET);
+    }
+
+    @Override
+    public boolean confirmSolution(String command) {
+        return ask("Execute this command? (yes/no): ");
+    }
+
+    @Override
+    public boolean continueIteration(boolean verdictGiven) {
+        if (verdictGiven) {
+            return ask("Continue with next iteration? (yes/no): ");
+        }
+        return ask("\n" + Main.ANSI_YELLOW + "⚠️ AI didn't clearly indicate if the problem is resolved. Continue? (yes/no): " + Main.ANSI_RESET);
+    }
+
+    private boolean ask(String prompt) {
+        out.print(prompt);
+        return scanner.nextLine().trim().equalsIgnoreCase("yes");
+    }
+}
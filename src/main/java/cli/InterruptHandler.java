@@ -0,0 +1,72 @@
+package cli;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * While installed, Ctrl-C runs a cancel action instead of ending the JVM, so an interrupted session
+ * returns to the prompt. A second Ctrl-C before the handler is closed still quits, so a session that
+ * doesn't wind down can always be left.
+ * sun.misc.Signal is the only way to catch SIGINT; it is looked up reflectively because compiling against it
+ * raises internal-API warnings that javac can't suppress.
+ */
+final class InterruptHandler implements AutoCloseable {
+    // Exit code of a process ended by SIGINT
+    private static final int INTERRUPTED_EXIT_CODE = 128 + 2;
+
+    // Signal.handle(Signal, SignalHandler), the sun.misc.Signal for SIGINT and the handler it replaced
+    private final Method handle;
+    private final Object signal;
+    private final Object previous;
+
+    private InterruptHandler(Method handle, Object signal, Object previous) {
+        this.handle = handle;
+        this.signal = signal;
+        this.previous = previous;
+    }
+
+    /**
+     * @param onInterrupt Runs on the signal thread at the first Ctrl-C
+     * @return The installed handler; without signal support, e.g. under -Xrs, Ctrl-C keeps its default behaviour
+     */
+    static InterruptHandler install(Runnable onInterrupt) {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Runnable onSignal = () -> {
+            if (interrupted.getAndSet(true)) {
+                System.exit(INTERRUPTED_EXIT_CODE);
+            }
+            onInterrupt.run();
+        };
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object signal = signalClass.getConstructor(String.class).newInstance("INT");
+            // A SignalHandler whose handle(Signal) ignores its argument and runs onSignal
+            MethodHandle run = MethodHandles.publicLookup()
+                .findVirtual(Runnable.class, "run", MethodType.methodType(void.class))
+                .bindTo(onSignal);
+            Object handler = MethodHandleProxies.asInterfaceInstance(handlerClass, MethodHandles.dropArguments(run, 0, signalClass));
+            Method handle = signalClass.getMethod("handle", signalClass, handlerClass);
+            Object previous = handle.invoke(null, signal, handler);
+            return new InterruptHandler(handle, signal, previous);
+        } catch (ReflectiveOperationException | IllegalArgumentException | UnsupportedOperationException e) {
+            return new InterruptHandler(null, null, null);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (signal == null) {
+            return;
+        }
+        try {
+            handle.invoke(null, signal, previous);
+        } catch (ReflectiveOperationException e) {
+            // The handler was installed the same way, so restoring it doesn't fail
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import journal.SessionJournal;
+import journal.SessionJournal.Record;
+import journal.SessionJournal.Type;
+import org.json.JSONObject;
+
+/**
+ * Feeds a resumed session the AI answers and command outcomes recorded in its journal, in order,
+ * so the conversation is rebuilt without contacting the provider or re-running anything.
+ * Replay stops for good at the first record that doesn't match what the session asks for next;
+ * from there on the session runs live.
+ */
+class JournalReplay {
+    private final List<Record> records = new ArrayList<>();
+    private int next;
+
+    JournalReplay(List<Record> journalRecords) {
+        for (Record record : journalRecords) {
+            Type type = record.getType();
+            // Prompts are rebuilt by the session itself and verdicts follow from the answers
+            if (type == Type.RESPONSE || type == Type.PLAN || type == Type.COMMAND) {
+                records.add(record);
+            }
+        }
+    }
+
+    /**
+     * @return The user query the journaled session was started with
+     * @throws IllegalArgumentException if the journal has no metadata record
+     */
+    static String query(SessionJournal journal) {
+        for (Record record : journal.getRecords()) {
+            if (record.getType() == Type.META) {
+                return new JSONObject(record.text()).getString("query");
+            }
+        }
+        throw new IllegalArgumentException("Session " + journal.getId() + " has no recorded query");
+    }
+
+    boolean hasMore() {
+        return next < records.size();
+    }
+
+    /**
+     * @return The next recorded answer of this type, or null once replay has ended
+     */
+    String nextAnswer(Type type) {
+        if (!hasMore() || records.get(next).getType() != type) {
+            stop();
+            return null;
+        }
+        return records.get(next++).text();
+    }
+
+    /**
+     * @return The recorded outcome of this command, or null once replay has ended
+     */
+    JSONObject nextCommand(String command) {
+        if (!hasMore() || records.get(next).getType() != Type.COMMAND) {
+            stop();
+            return null;
+        }
+        JSONObject outcome = new JSONObject(records.get(next).text());
+        if (!outcome.getString("command").equals(command)) {
+            stop();
+            return null;
+        }
+        next++;
+        return outcome;
+    }
+
+    private void stop() {
+        next = records.size();
+    }
+}
@@ -0,0 +1,162 @@
+package cli;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line-level unified diff using Myers' O((N+M)D) algorithm.
+ * Only the snapshots of the furthest-reaching paths are kept, so memory grows with the square of the
+ * number of edits rather than with the size of the inputs; inputs that differ by more than
+ * {@link #MAX_EDITS} lines are reported as too different to diff.
+ */
+final class LineDiff {
+    static final int MAX_EDITS = 1000;
+
+    private LineDiff() {
+    }
+
+    /**
+     * @param context Unchanged lines to show around each change
+     * @return The hunks of a unified diff without file headers, an empty string for equal inputs,
+     *         or null if the inputs differ in more than {@link #MAX_EDITS} lines
+     */
+    static String unified(List<String> before, List<String> after, int context) {
+        // Compare small integers instead of strings in the inner loop
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = ids(before, ids);
+        int[] b = ids(after, ids);
+
+        List<int[]> trace = new ArrayList<>();
+        if (!search(a, b, trace)) {
+            return null;
+        }
+        char[] ops = backtrack(a.length, b.length, trace);
+        return render(ops, before, after, context);
+    }
+
+    private static int[] ids(List<String> lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer id = ids.get(lines.get(i));
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines.get(i), id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    /**
+     * Forward Myers search; trace.get(d) holds the furthest x on each diagonal k in [-d, d] after d edits
+     * @return false if more than MAX_EDITS edits are needed
+     */
+    private static boolean search(int[] a, int[] b, List<int[]> trace) {
+        int n = a.length;
+        int m = b.length;
+        int max = Math.min(n + m, MAX_EDITS);
+        int[] v = new int[2 * max + 3];
+        int offset = max + 1;
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])
+                    ? v[offset + k + 1]
+                    : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+            }
+            int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+            int k = n - m;
+            if (k >= -d && k <= d && ((k + d) & 1) == 0 && v[offset + k] >= n) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return One op per line of the edit script, in order: ' ' kept, '-' removed, '+' added
+     */
+    private static char[] backtrack(int n, int m, List<int[]> trace) {
+        int edits = trace.size() - 1;
+        char[] ops = new char[n + m - (n + m - edits) / 2];
+        int position = ops.length;
+        int x = n;
+        int y = m;
+        for (int d = edits; d > 0; d--) {
+            int[] previous = trace.get(d - 1);
+            int k = x - y;
+            boolean down = k == -d || (k != d && at(previous, d - 1, k - 1) < at(previous, d - 1, k + 1));
+            int previousK = down ? k + 1 : k - 1;
+            int previousX = at(previous, d - 1, previousK);
+            int previousY = previousX - previousK;
+            int startX = down ? previousX : previousX + 1;
+            while (x > startX) {
+                ops[--position] = ' ';
+                x--;
+                y--;
+            }
+            ops[--position] = down ? '+' : '-';
+            x = previousX;
+            y = previousY;
+        }
+        while (x > 0) {
+            ops[--position] = ' ';
+            x--;
+        }
+        return ops;
+    }
+
+    private static int at(int[] snapshot, int d, int k) {
+        return snapshot[k + d];
+    }
+
+    private static String render(char[] ops, List<String> before, List<String> after, int context) {
+        // Positions in before and after where each op starts
+        int[] lineA = new int[ops.length + 1];
+        int[] lineB = new int[ops.length + 1];
+        for (int j = 0; j < ops.length; j++) {
+            lineA[j + 1] = lineA[j] + (ops[j] == '+' ? 0 : 1);
+            lineB[j + 1] = lineB[j] + (ops[j] == '-' ? 0 : 1);
+        }
+
+        StringBuilder diff = new StringBuilder();
+        int i = 0;
+        while (i < ops.length) {
+            if (ops[i] == ' ') {
+                i++;
+                continue;
+            }
+            // Changes separated by at most 2 * context kept lines share a hunk
+            int lastChange = i;
+            for (int j = i + 1; j < ops.length && j - lastChange <= 2 * context; j++) {
+                if (ops[j] != ' ') {
+                    lastChange = j;
+                }
+            }
+            int start = Math.max(0, i - context);
+            int end = Math.min(ops.length, lastChange + 1 + context);
+
+            int countA = lineA[end] - lineA[start];
+            int countB = lineB[end] - lineB[start];
+            if (diff.length() > 0) {
+                diff.append('\n');
+            }
+            diff.append("@@ -").append(countA == 0 ? lineA[start] : lineA[start] + 1).append(',').append(countA)
+                .append(" +").append(countB == 0 ? lineB[start] : lineB[start] + 1).append(',').append(countB).append(" @@");
+            for (int j = start; j < end; j++) {
+                diff.append('\n').append(ops[j]).append(ops[j] == '+' ? after.get(lineB[j]) : before.get(lineA[j]));
+            }
+            i = end;
+        }
+        return diff.toString();
+    }
+}
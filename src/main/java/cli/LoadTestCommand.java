@@ -0,0 +1,265 @@
+package cli;
+
+import ai.AIHandler;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import loadtest.LatencyDistribution;
+import loadtest.MockLLMServer;
+import metrics.Metrics;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * End-to-end load test against an in-process mock provider.
+ * Drives full sessions through either the batch code path or a daemon on a temporary socket,
+ * so HTTP, parsing, safety checks and command execution are all exercised without API quota.
+ */
+@CommandLine.Command(name = "loadtest", mixinStandardHelpOptions = true,
+                     description = "Run sessions against a local mock LLM server and report throughput and latency percentiles.")
+public class LoadTestCommand implements Callable<Integer> {
+    enum Mode { batch, daemon }
+    enum Format { openai, gemini }
+
+    @CommandLine.Option(names = "--mode", defaultValue = "batch", description = "Code path to drive: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private Mode mode;
+
+    @CommandLine.Option(names = "--format", defaultValue = "openai", description = "Wire format of the mock provider: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private Format format;
+
+    @CommandLine.Option(names = {"-c", "--concurrency"}, defaultValue = "8", description = "Sessions in flight at once (default: ${DEFAULT-VALUE})")
+    private int concurrency;
+
+    @CommandLine.Option(names = {"-n", "--requests"}, defaultValue = "100", description = "Total sessions to run (default: ${DEFAULT-VALUE})")
+    private int requests;
+
+    @CommandLine.Option(names = "--latency", defaultValue = "lognormal:300:0.5",
+                        description = "Mock time to first byte: fixed:MS, uniform:MIN-MAX or lognormal:MEDIAN[:SIGMA] (default: ${DEFAULT-VALUE})")
+    private String latency;
+
+    @CommandLine.Option(names = "--tokens-per-second", defaultValue = "0", description = "Mock generation speed, 0 for instant (default: ${DEFAULT-VALUE})")
+    private double tokensPerSecond;
+
+    @CommandLine.Option(names = "--error-rate", defaultValue = "0", description = "Fraction of mock answers replaced by an error (default: ${DEFAULT-VALUE})")
+    private double errorRate;
+
+    @CommandLine.Option(names = "--error-status", defaultValue = "500", description = "HTTP status of injected errors (default: ${DEFAULT-VALUE})")
+    private int errorStatus;
+
+    @CommandLine.Option(names = "--script", paramLabel = "FILE",
+                        description = "JSON file with \"diagnostic\" and \"solution\" arrays of scripted COMMAND: answers")
+    private Path script;
+
+    @CommandLine.Option(names = "--fast-model", description = "Route diagnostic prompts to this model, as with sysai --fast-model")
+    private String fastModel;
+
+    @CommandLine.Option(names = "--structured", description = "Use structured command plans instead of free text")
+    private boolean structured;
+
+    @CommandLine.Option(names = "--json", description = "Print the report as JSON")
+    private boolean json;
+
+    @Override
+    public Integer call() throws Exception {
+        if (concurrency < 1 || requests < 1) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--concurrency and --requests must be at least 1");
+        }
+
+        MockLLMServer mock = new MockLLMServer()
+            .latency(LatencyDistribution.parse(latency))
+            .tokensPerSecond(tokensPerSecond)
+            .errors(errorRate, errorStatus);
+        if (script != null) {
+            JSONObject scripted = new JSONObject(Files.readString(script));
+            mock.script(strings(scripted.getJSONArray("diagnostic")), strings(scripted.getJSONArray("solution")));
+        }
+
+        try (mock) {
+            mock.start();
+            String provider = format == Format.gemini ? "Gemini" : "OpenAI";
+            String model = format == Format.gemini ? "gemini-pro" : "gpt-4";
+            // Exact per-session latencies; the shared histograms only resolve to a factor of two
+            long[] sessions = new long[requests];
+
+            long start = System.nanoTime();
+            LongAdder failures = mode == Mode.daemon
+                ? runAgainstDaemon(provider, model, mock.getBaseUrl(), sessions)
+                : runInProcess(handler(provider, model, mock.getBaseUrl()), sessions);
+            long elapsedNanos = System.nanoTime() - start;
+
+            JSONObject report = report(sessions, failures.sum(), elapsedNanos, mock);
+            System.out.println(json ? report.toString() : describe(report));
+            return 0;
+        }
+    }
+
+    private AIHandler handler(String provider, String model, String baseUrl) {
+        AIHandler handler = new AIHandler(provider, model, "mock-key", baseUrl);
+        handler.setFastModel(fastModel);
+        return handler;
+    }
+
+    private LongAdder runInProcess(AIHandler aiHandler, long[] sessions) throws Exception {
+        String systemDetails = TroubleshootingSession.describeSystem();
+        return runWorkers(sessions, () -> request -> BatchCommand.runQuery(aiHandler, systemDetails, request, structured));
+    }
+
+    private LongAdder runAgainstDaemon(String provider, String model, String baseUrl, long[] sessions) throws Exception {
+        Path directory = Files.createTempDirectory("sysai-loadtest");
+        Path socket = directory.resolve("sysai.sock");
+        List<String> args = new ArrayList<>(List.of(
+            "--socket", socket.toString(), "--concurrency", String.valueOf(concurrency),
+            "--provider", provider, "--model", model, "--api-key", "mock-key", "--base-url", baseUrl, "--no-cache"));
+        if (fastModel != null) {
+            args.addAll(List.of("--fast-model", fastModel));
+        }
+        Thread daemon = new Thread(() -> new CommandLine(new DaemonCommand()).execute(args.toArray(new String[0])),
+                                   "loadtest-daemon");
+        daemon.start();
+        try {
+            return runWorkers(sessions, () -> {
+                DaemonClient client = connect(socket);
+                return new Session() {
+                    @Override
+                    public JSONObject run(JSONObject request) throws IOException {
+                        return client.send(request.put("structured", structured));
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        client.close();
+                    }
+                };
+            });
+        } finally {
+            daemon.interrupt();
+            daemon.join(5000);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private interface Session extends AutoCloseable {
+        JSONObject run(JSONObject request) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private interface SessionFactory {
+        Session create() throws Exception;
+    }
+
+    /**
+     * Run all requests on a fixed set of workers, each pulling the next request number until none are left
+     */
+    private LongAdder runWorkers(long[] sessions, SessionFactory factory) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        LongAdder failures = new LongAdder();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < concurrency; w++) {
+                workers.add(pool.submit(() -> {
+                    try (Session session = factory.create()) {
+                        int n;
+                        while ((n = next.getAndIncrement()) < requests) {
+                            JSONObject request = new JSONObject().put("id", n)
+                                .put("query", "load test query " + n + ": the web server is slow");
+                            long sessionStart = System.nanoTime();
+                            JSONObject result;
+                            try {
+                                result = session.run(request);
+                            } catch (IOException e) {
+                                result = new JSONObject().put("error", e.getMessage());
+                            }
+                            sessions[n] = System.nanoTime() - sessionStart;
+                            if (result.has("error")) {
+                                failures.increment();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return failures;
+    }
+
+    private JSONObject report(long[] sessions, long failures, long elapsedNanos, MockLLMServer mock) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        long[] sorted = sessions.clone();
+        Arrays.sort(sorted);
+        return new JSONObject()
+            .put("mode", mode.name())
+            .put("format", format.name())
+            .put("concurrency", concurrency)
+            .put("sessions", requests)
+            .put("failed_sessions", failures)
+            .put("elapsed_s", elapsedSeconds)
+            .put("sessions_per_s", requests / elapsedSeconds)
+            .put("p50_ms", millis(percentile(sorted, 0.50)))
+            .put("p90_ms", millis(percentile(sorted, 0.90)))
+            .put("p99_ms", millis(percentile(sorted, 0.99)))
+            .put("max_ms", millis(sorted[sorted.length - 1]))
+            .put("ai_query_p50_ms", millis(Metrics.AI_QUERY.getPercentileNanos(0.50)))
+            .put("mock_requests", mock.getRequests())
+            .put("mock_fast_model_requests", fastModel == null ? 0 : mock.getRequests(fastModel))
+            .put("mock_injected_errors", mock.getInjectedErrors());
+    }
+
+    private static String describe(JSONObject report) {
+        return String.format("Sessions:    %d in %.2f s (%.1f/s), %d failed, %s mode, %s format, concurrency %d%n" +
+                             "Latency:     p50 %.0f ms, p90 %.0f ms, p99 %.0f ms, max %.0f ms (AI query p50 ~%.0f ms)%n" +
+                             "Mock server: %d requests (%d to the fast model), %d injected errors",
+            report.getInt("sessions"), report.getDouble("elapsed_s"), report.getDouble("sessions_per_s"),
+            report.getLong("failed_sessions"), report.getString("mode"), report.getString("format"), report.getInt("concurrency"),
+            report.getDouble("p50_ms"), report.getDouble("p90_ms"), report.getDouble("p99_ms"), report.getDouble("max_ms"),
+            report.getDouble("ai_query_p50_ms"),
+            report.getLong("mock_requests"), report.getLong("mock_fast_model_requests"), report.getLong("mock_injected_errors"));
+    }
+
+    private static DaemonClient connect(Path socket) throws Exception {
+        // The daemon binds asynchronously; retry until it is listening
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new DaemonClient(socket);
+            } catch (IOException e) {
+                if (attempt == 100) throw e;
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static List<String> strings(JSONArray array) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            values.add(array.getString(i));
+        }
+        return values;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
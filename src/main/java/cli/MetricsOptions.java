@@ -0,0 +1,82 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import metrics.MetricsExporter;
+import metrics.Tracer;
+import picocli.CommandLine;
+
+/**
+ * Latency metrics and trace export options shared by the interactive mode and the subcommands.
+ * Files are written when the JVM exits, whether by 'exit', end of input or a signal; the latency files are
+ * also rewritten every {@link #intervalSeconds} while running, so a long-lived daemon's textfile stays current.
+ */
+public class MetricsOptions {
+    @CommandLine.Option(names = "--metrics", paramLabel = "FILE", description = "Write a JSON latency summary to FILE, kept current while running and on exit")
+    Path jsonFile;
+
+    @CommandLine.Option(names = "--metrics-textfile", paramLabel = "FILE",
+                        description = "Write latency histograms in Prometheus text format to FILE while running and on exit, " +
+                                      "e.g. into the node exporter textfile collector directory")
+    Path prometheusFile;
+
+    @CommandLine.Option(names = "--trace", paramLabel = "FILE",
+                        description = "Record a timeline of every session and write it to FILE on exit " +
+                                      "in Chrome trace format (open in Perfetto or chrome://tracing)")
+    Path traceFile;
+
+    @CommandLine.Option(names = "--metrics-interval", paramLabel = "SECONDS", defaultValue = "15",
+                        description = "Rewrite the --metrics and --metrics-textfile files this often while running, " +
+                                      "0 to write them only on exit (default: ${DEFAULT-VALUE})")
+    long intervalSeconds = 15;
+
+    /**
+     * Start rewriting the latency files periodically and register a shutdown hook that writes all requested
+     * files; does nothing if none were requested
+     */
+    void startExport() {
+        if (jsonFile == null && prometheusFile == null && traceFile == null) {
+            return;
+        }
+        if (traceFile != null) {
+            Tracer.enable();
+        }
+        if (intervalSeconds > 0 && (jsonFile != null || prometheusFile != null)) {
+            ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sysai-metrics-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+            exporter.scheduleWithFixedDelay(this::exportLatencies, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::export, "sysai-metrics-export"));
+    }
+
+    void export() {
+        exportLatencies();
+        if (traceFile != null) {
+            try {
+                Tracer.write(traceFile);
+            } catch (IOException e) {
+                System.err.println("Failed to write trace: " + e.getMessage());
+            }
+        }
+    }
+
+    // The trace only grows, so it is written once at exit rather than on every tick
+    synchronized void exportLatencies() {
+        try {
+            if (jsonFile != null) {
+                MetricsExporter.writeJson(jsonFile);
+            }
+            if (prometheusFile != null) {
+                MetricsExporter.writePrometheus(prometheusFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write metrics: " + e.getMessage());
+        }
+    }
+}
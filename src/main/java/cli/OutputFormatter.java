@@ -0,0 +1,123 @@
+package cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Renders command output line by line as it arrives, with bounded memory.
+ * Shows the first {@link #MAX_LINES} lines cut to {@link #MAX_LINE_LENGTH} characters, then only counts
+ * the rest. Blank lines are held back until more output follows, so trailing blank lines are dropped
+ * and output that is entirely blank is shown as "(No output)".
+ */
+class OutputFormatter implements Consumer<String> {
+    static final int MAX_LINES = 20;
+    static final int MAX_LINE_LENGTH = 100;
+
+    private final Appendable target;
+    private int shownLines;
+    private int hiddenLines;
+    private int pendingBlankLines;
+    private boolean sawContent;
+    private long formatNanos;
+
+    /**
+     * @param target Where formatted lines go, e.g. the terminal or a StringBuilder
+     */
+    OutputFormatter(Appendable target) {
+        this.target = target;
+    }
+
+    /**
+     * Format a complete output that is already in memory
+     */
+    static String format(String output) {
+        StringBuilder formatted = new StringBuilder();
+        OutputFormatter formatter = new OutputFormatter(formatted);
+        if (output != null) {
+            int start = 0;
+            int newline;
+            while ((newline = output.indexOf('\n', start)) != -1) {
+                formatter.line(output, start, newline);
+                start = newline + 1;
+            }
+            formatter.line(output, start, output.length());
+        }
+        formatter.finish();
+        return formatted.toString();
+    }
+
+    /**
+     * Accept one line of output, without its line terminator
+     */
+    @Override
+    public void accept(String line) {
+        line(line, 0, line.length());
+    }
+
+    void line(CharSequence text, int start, int end) {
+        long begin = System.nanoTime();
+        if (isBlank(text, start, end)) {
+            pendingBlankLines++;
+        } else {
+            for (; pendingBlankLines > 0; pendingBlankLines--) {
+                emit("", 0, 0);
+            }
+            sawContent = true;
+            emit(text, start, end);
+        }
+        formatNanos += System.nanoTime() - begin;
+    }
+
+    /**
+     * Write the summary that follows the last line: a hidden-line count or "(No output)"
+     */
+    void finish() {
+        if (!sawContent) {
+            append("(No output)\n", 0, 12);
+        } else if (hiddenLines > 0) {
+            String summary = "... (" + hiddenLines + " more lines not shown)\n";
+            append(summary, 0, summary.length());
+        }
+    }
+
+    /**
+     * @return Time spent formatting so far, excluding the time spent waiting for lines
+     */
+    long getFormatNanos() {
+        return formatNanos;
+    }
+
+    private void emit(CharSequence text, int start, int end) {
+        if (shownLines >= MAX_LINES) {
+            hiddenLines++;
+            return;
+        }
+        shownLines++;
+        if (end - start > MAX_LINE_LENGTH) {
+            append(text, start, start + MAX_LINE_LENGTH);
+            append("...\n", 0, 4);
+        } else {
+            append(text, start, end);
+            append("\n", 0, 1);
+        }
+    }
+
+    private void append(CharSequence text, int start, int end) {
+        try {
+            target.append(text, start, end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Same notion of blank as String.trim().isEmpty(), without creating the trimmed copy
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
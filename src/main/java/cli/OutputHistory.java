@@ -0,0 +1,45 @@
+package cli;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the last output of every command run in a session, so that a command the AI asks for again
+ * adds only what changed to the context instead of its whole output.
+ */
+class OutputHistory {
+    private static final int CONTEXT_LINES = 2;
+
+    private final Map<String, String> lastOutputs = new HashMap<>();
+
+    /**
+     * Record an output and describe it relative to the previous run of the same command
+     * @return The output itself on the first run or when a diff wouldn't be shorter,
+     *         otherwise a note that it is unchanged or a unified diff against the previous run
+     */
+    String describe(String command, String output) {
+        String previous = lastOutputs.put(command, output);
+        if (previous == null) {
+            return output;
+        }
+        if (previous.equals(output)) {
+            return "(unchanged since the previous run)";
+        }
+        String diff = LineDiff.unified(lines(previous), lines(output), CONTEXT_LINES);
+        String changed = "(changed since the previous run, unified diff)\n" + diff;
+        return diff == null || changed.length() >= output.length() ? output : changed;
+    }
+
+    /**
+     * Forget all outputs, so the next run of every command is described in full
+     */
+    void clear() {
+        lastOutputs.clear();
+    }
+
+    private static List<String> lines(String output) {
+        return Arrays.asList(output.split("\n", -1));
+    }
+}
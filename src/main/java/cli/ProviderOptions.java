@@ -0,0 +1,59 @@
+package cli;
+
+import ai.AIHandler;
+import ai.ResponseCache;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * Provider options shared by the non-interactive subcommands.
+ * Anything not given on the command line is taken from ~/.sysai_config.json.
+ */
+public class ProviderOptions {
+    @CommandLine.Option(names = "--provider", description = "AI provider (default: from config)")
+    String provider;
+
+    @CommandLine.Option(names = "--model", description = "Model name (default: from config)")
+    String model;
+
+    @CommandLine.Option(names = "--fast-model", description = "Cheaper model for picking diagnostic commands (default: fastModel from config, else --model)")
+    String fastModel;
+
+    @CommandLine.Option(names = "--api-key", description = "API key (default: from config)")
+    String apiKey;
+
+    @CommandLine.Option(names = "--base-url", description = "Provider base URL (default: from config)")
+    String baseUrl;
+
+    @CommandLine.Option(names = "--no-cache", description = "Always contact the AI provider instead of reusing cached responses")
+    boolean noCache;
+
+    @CommandLine.Option(names = "--structured", description = "Ask the AI for typed JSON command plans instead of parsing free text")
+    boolean structured;
+
+    /**
+     * Build a handler from the options, falling back to the saved configuration
+     * @throws IllegalStateException if no provider or model is configured
+     */
+    AIHandler createHandler() {
+        JSONObject config = Main.loadConfig();
+        if (config == null) {
+            config = new JSONObject();
+        }
+        String provider = this.provider != null ? this.provider : config.optString("provider", null);
+        String model = this.model != null ? this.model : config.optString("model", null);
+        if (provider == null || model == null) {
+            throw new IllegalStateException("No provider/model configured. Run sysai interactively once or pass --provider and --model.");
+        }
+
+        AIHandler aiHandler = new AIHandler(
+            provider,
+            model,
+            apiKey != null ? apiKey : config.optString("apiKey", ""),
+            baseUrl != null ? baseUrl : config.optString("baseUrl", null)
+        );
+        aiHandler.setFastModel(fastModel != null ? fastModel : config.optString("fastModel", null));
+        aiHandler.setResponseCache(noCache ? null : ResponseCache.createDefault());
+        return aiHandler;
+    }
+}
@@ -0,0 +1,103 @@
+package cli;
+
+import ai.UsageTracker;
+import org.json.JSONObject;
+
+/**
+ * Limits on the tokens, wall time and iterations one troubleshooting session may use; 0 means unlimited.
+ * A session that reaches {@link #DEGRADE_AT} of its token or time budget degrades first (compacted context,
+ * fast model for every prompt) and stops once a limit is reached, so a runaway session can neither burn
+ * quota unnoticed nor hold a batch worker indefinitely.
+ */
+public class SessionBudget {
+    public static final SessionBudget UNLIMITED = new SessionBudget(0, 0, 0);
+
+    // Fraction of the token or time budget after which the session starts to economize
+    static final double DEGRADE_AT = 0.75;
+
+    private final long maxTokens;
+    private final long maxSeconds;
+    private final int maxIterations;
+
+    public SessionBudget(long maxTokens, long maxSeconds, int maxIterations) {
+        if (maxTokens < 0 || maxSeconds < 0 || maxIterations < 0) {
+            throw new IllegalArgumentException("Budget limits must not be negative");
+        }
+        this.maxTokens = maxTokens;
+        this.maxSeconds = maxSeconds;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Read the "budget" object of the configuration: {"maxTokens": ..., "maxSeconds": ..., "maxIterations": ...}
+     * @param config The configuration, or null
+     */
+    static SessionBudget fromConfig(JSONObject config) {
+        JSONObject budget = config == null ? null : config.optJSONObject("budget");
+        if (budget == null) {
+            return UNLIMITED;
+        }
+        return new SessionBudget(budget.optLong("maxTokens", 0), budget.optLong("maxSeconds", 0),
+                                 budget.optInt("maxIterations", 0));
+    }
+
+    public long getMaxTokens() {
+        return maxTokens;
+    }
+
+    public long getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * @return Why no more AI calls may be made, or null if the token and time budgets allow them
+     */
+    String exhausted(UsageTracker usage, long elapsedMillis) {
+        if (maxTokens > 0 && usage.getTotalTokens() >= maxTokens) {
+            return "token budget of " + maxTokens + " reached (" + usage.getTotalTokens() + " used)";
+        }
+        if (maxSeconds > 0 && elapsedMillis >= maxSeconds * 1000) {
+            return describeTimeLimit();
+        }
+        return null;
+    }
+
+    /**
+     * @return The stop reason of a session that ran out of time
+     */
+    String describeTimeLimit() {
+        return "time budget of " + maxSeconds + " s reached";
+    }
+
+    /**
+     * @param iterations Iterations already run
+     * @return Why no further iteration may start, or null if it may
+     */
+    String exhausted(int iterations, UsageTracker usage, long elapsedMillis) {
+        if (maxIterations > 0 && iterations >= maxIterations) {
+            return "iteration budget of " + maxIterations + " reached";
+        }
+        return exhausted(usage, elapsedMillis);
+    }
+
+    /**
+     * @return true once the token or time budget is nearly used up
+     */
+    boolean approaching(UsageTracker usage, long elapsedMillis) {
+        return (maxTokens > 0 && usage.getTotalTokens() >= maxTokens * DEGRADE_AT) ||
+               (maxSeconds > 0 && elapsedMillis >= maxSeconds * 1000 * DEGRADE_AT);
+    }
+
+    /**
+     * @return A copy with each limit that is given (not null) replaced
+     */
+    SessionBudget override(Long maxTokens, Long maxSeconds, Integer maxIterations) {
+        return new SessionBudget(maxTokens != null ? maxTokens : this.maxTokens,
+                                 maxSeconds != null ? maxSeconds : this.maxSeconds,
+                                 maxIterations != null ? maxIterations : this.maxIterations);
+    }
+}
@@ -0,0 +1,48 @@
+package cli;
+
+/**
+ * Decides on every confirmation a troubleshooting session would otherwise ask the user
+ */
+public interface SessionPolicy {
+    /**
+     * @param command A command flagged by the safety checker
+     * @param diagnostic Whether the command was proposed in the diagnostic phase
+     * @return true to run it anyway
+     */
+    boolean confirmDangerous(String command, boolean diagnostic);
+
+    /**
+     * @param command A diagnostic command the AI itself marked as modifying the system
+     * @return true to run it anyway
+     */
+    boolean confirmModifyingDiagnostic(String command);
+
+    /**
+     * @param command A solution command that passed the safety check
+     * @return true to execute it
+     */
+    boolean confirmSolution(String command);
+
+    /**
+     * @param verdictGiven Whether the AI explicitly said the problem is not resolved,
+     *                     as opposed to giving no verdict at all
+     * @return true to start another diagnostic iteration
+     */
+    boolean continueIteration(boolean verdictGiven);
+
+    /**
+     * @return false to run no diagnostics when the AI's answer has no COMMAND: lines, instead of guessing
+     *         commands from its prose, where any line may look like one
+     */
+    default boolean acceptsGuessedCommands() {
+        return true;
+    }
+
+    /**
+     * @return false if {@link #continueIteration} never starts another iteration, so nothing should be
+     *         prepared for one
+     */
+    default boolean mayContinue() {
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package cli;
+
+import ai.UsageTracker;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * What happened during one troubleshooting session, for machine-readable output
+ */
+public class SessionResult {
+    /**
+     * Outcome of one proposed command
+     */
+    public static class CommandRecord {
+        private final String phase;
+        private final String command;
+        private final String purpose;
+        private final String status;
+        private final String output;
+
+        CommandRecord(String phase, String command, String purpose, String status, String output) {
+            this.phase = phase;
+            this.command = command;
+            this.purpose = purpose;
+            this.status = status;
+            this.output = output;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getPurpose() {
+            return purpose;
+        }
+
+        /**
+         * @return executed, failed, skipped, skipped-dangerous, skipped-modifying, skipped-missing or cancelled
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * @return The command output, or null if it was not executed
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject()
+                .put("phase", phase)
+                .put("command", command)
+                .put("purpose", purpose)
+                .put("status", status);
+            if (output != null) {
+                json.put("output", output);
+            }
+            return json;
+        }
+    }
+
+    private final String query;
+    private final List<CommandRecord> commands = new ArrayList<>();
+    private int iterations;
+    private boolean resolved;
+    private String resolution;
+    private long elapsedMillis;
+    private String error;
+    private String stopReason;
+    private UsageTracker usage;
+
+    public SessionResult(String query) {
+        this.query = query;
+    }
+
+    void addCommand(String phase, String command, String purpose, String status, String output) {
+        commands.add(new CommandRecord(phase, command, purpose, status, output));
+    }
+
+    void startIteration() {
+        iterations++;
+    }
+
+    void setResolution(String resolution) {
+        this.resolution = resolution;
+        this.resolved = resolution != null && resolution.startsWith("YES");
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    void setStopReason(String stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    void setUsage(UsageTracker usage) {
+        this.usage = usage;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public List<CommandRecord> getCommands() {
+        return commands;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * @return The AI's last verdict ("YES" or "NO, because..."), or null if it gave none
+     */
+    public String getResolution() {
+        return resolution;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return The last error reported by the AI provider, or null if every call succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return Why the session budget ended the session, or null if it ended normally
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return The AI calls, tokens and time the session used
+     */
+    public UsageTracker getUsage() {
+        return usage;
+    }
+
+    public JSONObject toJson() {
+        JSONArray commandArray = new JSONArray();
+        for (CommandRecord record : commands) {
+            commandArray.put(record.toJson());
+        }
+        JSONObject json = new JSONObject()
+            .put("query", query)
+            .put("iterations", iterations)
+            .put("resolved", resolved)
+            .put("commands", commandArray)
+            .put("elapsedMs", elapsedMillis);
+        if (resolution != null) {
+            json.put("resolution", resolution);
+        }
+        if (error != null) {
+            json.put("error", error);
+        }
+        if (stopReason != null) {
+            json.put("stopped", stopReason);
+        }
+        if (usage != null) {
+            json.put("usage", usage.toJson());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,994 @@
+package cli;
+
+import static cli.Main.ANSI_BLUE;
+import static cli.Main.ANSI_GREEN;
+import static cli.Main.ANSI_RED;
+import static cli.Main.ANSI_RESET;
+import static cli.Main.ANSI_YELLOW;
+
+import ai.AIHandler;
+import ai.CommandPlan;
+import ai.PlannedCommand;
+import ai.TokenUsage;
+import ai.UsageTracker;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import journal.SessionJournal;
+import metrics.Metrics;
+import metrics.Tracer;
+import safety.SafetyChecker;
+import org.json.JSONObject;
+import system.ExecutionProfile;
+import system.HostFingerprint;
+import system.LogScanner;
+import system.PathIndex;
+import system.SystemExecutor;
+
+/**
+ * One diagnose-and-solve conversation about a single user query.
+ * Alternates diagnostic and solution phases until the AI reports the problem as resolved,
+ * the {@link SessionPolicy} declines another iteration or the {@link SessionBudget} is used up.
+ */
+public class TroubleshootingSession {
+    static final String DIAGNOSTIC = "diagnostic";
+    static final String SOLUTION = "solution";
+
+    private static final Pattern COMMAND_PATTERN = Pattern.compile("COMMAND:\\s*([^\\n]+)");
+    private static final Pattern PURPOSE_PATTERN = Pattern.compile("PURPOSE:\\s*([^\\n]+)");
+    private static final Pattern EXPLANATION_PATTERN = Pattern.compile("EXPLANATION:\\s*([^\\n]+)");
+    private static final Pattern RESOLVED_PATTERN = Pattern.compile("PROBLEM_RESOLVED:\\s*(YES|NO[^\\n]*)");
+
+    // Command results kept when the context is compacted to save tokens
+    static final int COMPACTED_CONTEXT_CHARS = 4000;
+
+    // Tokens that discarded prefetches may cost a session before it stops prefetching
+    static final long PREFETCH_WASTE_CAP_TOKENS = 4000;
+
+    // Cuts off the AI call or command in progress when a session's time budget runs out
+    private static final ScheduledExecutorService DEADLINES = createDeadlines();
+
+    // Sends prefetched prompts; daemon threads, so a prefetch nobody waits for never keeps the JVM alive
+    private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sysai-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AIHandler aiHandler;
+    private final String query;
+    private final boolean structured;
+    private final SessionPolicy policy;
+    private final PrintStream out;
+    private final String systemDetails;
+    private final StringBuilder contextHistory;
+    // Length of the system details and query at the start of the context, which compaction keeps
+    private final int contextHeaderLength;
+    // Where each command result starts in the context, so compaction drops whole results
+    private final List<Integer> contextEntries = new ArrayList<>();
+    private final SessionResult result;
+    private final OutputHistory outputHistory = new OutputHistory();
+    // Tools the AI suggested that this host doesn't have; later prompts ask it to avoid them
+    private final Set<String> missingTools = new LinkedHashSet<>();
+    private final UsageTracker usage = new UsageTracker();
+    private SessionBudget budget = SessionBudget.UNLIMITED;
+    private long startNanos;
+    private boolean economizing;
+    // Thread running the session, whose AI call or command cancel() aborts
+    private volatile Thread runner;
+    private volatile boolean cancelled;
+    // Why the session was cancelled; set before cancelled
+    private volatile String cancelReason;
+    private volatile Prefetch prefetch;
+    private final LongAdder prefetchWastedTokens = new LongAdder();
+    private SessionJournal journal;
+    private JournalReplay replay;
+
+    /**
+     * @param aiHandler Handler used for both phases
+     * @param systemDetails Description of the host, sent as the start of the context
+     * @param query The user's problem description
+     * @param structured Whether to ask for typed command plans instead of free text
+     * @param policy Makes every decision the user would otherwise be asked about
+     * @param out Where progress is printed
+     */
+    public TroubleshootingSession(AIHandler aiHandler, String systemDetails, String query, boolean structured,
+                                  SessionPolicy policy, PrintStream out) {
+        this.aiHandler = aiHandler;
+        this.query = query;
+        this.structured = structured;
+        this.policy = policy;
+        this.out = out;
+        this.systemDetails = systemDetails;
+        this.contextHistory = new StringBuilder(systemDetails);
+        this.contextHistory.append("\nUser query: ").append(query);
+        this.contextHeaderLength = contextHistory.length();
+        this.result = new SessionResult(query);
+        this.result.setUsage(usage);
+    }
+
+    /**
+     * The opening diagnostic prompt of the next iteration, sent while this iteration's solution commands
+     * are still being confirmed and run
+     */
+    private static final class Prefetch {
+        final String prompt;
+        final boolean structured;
+        final long start = System.nanoTime();
+        // Kept apart from the session's usage until the prefetch is used or discarded
+        final UsageTracker usage = new UsageTracker();
+        // The answer, or for structured prompts the plan JSON, empty if there was none
+        Future<String> answer;
+        volatile Thread sender;
+        volatile boolean aborted;
+        // Whichever of the call returning and the session discarding it comes second accounts for the call
+        private boolean finished;
+        private boolean discarded;
+
+        Prefetch(String prompt, boolean structured) {
+            this.prompt = prompt;
+            this.structured = structured;
+        }
+
+        /**
+         * Abort the call if it is still running; safe from any thread
+         */
+        void abort() {
+            aborted = true;
+            answer.cancel(false);
+            Thread sender = this.sender;
+            if (sender != null) {
+                AIHandler.cancel(sender);
+            }
+        }
+
+        /**
+         * @return true if the session already discarded the prefetch, so the returning call accounts for it
+         */
+        synchronized boolean finish() {
+            finished = true;
+            return discarded;
+        }
+
+        /**
+         * @return true if the call already returned, so the discarding session accounts for it
+         */
+        synchronized boolean discard() {
+            discarded = true;
+            return finished;
+        }
+    }
+
+    /**
+     * Limit the tokens, time and iterations the session may use
+     */
+    public void setBudget(SessionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Record the session in a journal. A journal that already holds records is replayed first:
+     * its answers and command outcomes are reused instead of asking the AI or running anything again.
+     * @param journal The journal to append to, or null to keep no record
+     */
+    public void setJournal(SessionJournal journal) {
+        this.journal = journal;
+        if (journal == null) {
+            return;
+        }
+        if (journal.getRecords().isEmpty()) {
+            writeJournal(SessionJournal.Type.META, new JSONObject()
+                .put("query", query)
+                .put("provider", aiHandler.getProvider())
+                .put("model", aiHandler.getModel())
+                .put("fast_model", aiHandler.getFastModel())
+                .put("started", System.currentTimeMillis())
+                .toString());
+        } else {
+            replay = new JournalReplay(journal.getRecords());
+            out.println(ANSI_YELLOW + "Replaying saved session " + journal.getId() + "; recorded commands are not run again." + ANSI_RESET);
+        }
+    }
+
+    /**
+     * Describe the local system for the start of the context
+     */
+    public static String describeSystem() {
+        String osType = System.getProperty("os.name");
+        String shell = System.getenv("SHELL");
+        if (shell == null) shell = "bash";
+        String hostFacts = HostFingerprint.describe();
+        return "OS: " + osType + ", Shell: " + shell + (hostFacts.isEmpty() ? "" : "\n" + hostFacts);
+    }
+
+    private static ScheduledExecutorService createDeadlines() {
+        ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sysai-session-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlines.setRemoveOnCancelPolicy(true);
+        return deadlines;
+    }
+
+    /**
+     * Stop the session from another thread, e.g. on Ctrl-C: the AI call or command in progress is aborted
+     * and run() returns without asking or running anything else. Nothing that was cut short is journaled,
+     * so a resumed session picks up where this one was interrupted.
+     */
+    public void cancel() {
+        cancel("cancelled by user");
+    }
+
+    private void cancel(String reason) {
+        if (cancelReason == null) {
+            cancelReason = reason;
+        }
+        cancelled = true;
+        Prefetch pending = prefetch;
+        if (pending != null) {
+            pending.abort();
+        }
+        Thread runner = this.runner;
+        if (runner != null) {
+            AIHandler.cancel(runner);
+            SystemExecutor.cancel(runner);
+        }
+    }
+
+    /**
+     * Run iterations until the problem is resolved or the policy stops the session
+     * @return What happened during the session
+     */
+    public SessionResult run() {
+        long start = System.nanoTime();
+        startNanos = start;
+        runner = Thread.currentThread();
+        // The budget is also checked between phases, but a hung provider or command must not outlast it
+        ScheduledFuture<?> deadline = budget.getMaxSeconds() == 0 ? null :
+            DEADLINES.schedule(() -> cancel(budget.describeTimeLimit()), budget.getMaxSeconds(), TimeUnit.SECONDS);
+        boolean problemResolved = false;
+
+        while (!problemResolved && !cancelled) {
+            result.startIteration();
+            long iterationStart = System.nanoTime();
+            economizeIfNeeded();
+            runDiagnosticPhase();
+            Metrics.DIAGNOSTIC_PHASE.recordSince(iterationStart);
+            Tracer.span("diagnostic_phase", "session", iterationStart);
+
+            if (cancelled) {
+                break;
+            }
+            String stopReason = budget.exhausted(usage, elapsedMillis());
+            if (stopReason != null) {
+                stop(stopReason);
+                break;
+            }
+            economizeIfNeeded();
+            long phaseStart = System.nanoTime();
+            String resolution = runSolutionPhase();
+            Metrics.SOLUTION_PHASE.recordSince(phaseStart);
+            Tracer.span("solution_phase", "session", phaseStart);
+            if (cancelled) {
+                break;
+            }
+            result.setResolution(resolution);
+            writeJournal(SessionJournal.Type.RESOLUTION, resolution == null ? "" : resolution);
+            if (journal != null) {
+                journal.force();
+            }
+            problemResolved = !shouldContinue(resolution);
+            if (Tracer.isEnabled()) {
+                Tracer.span("iteration " + result.getIterations(), "session", iterationStart, "resolution", resolution);
+            }
+        }
+
+        Prefetch unused = prefetch;
+        if (unused != null) {
+            prefetch = null;
+            discard(unused);
+        }
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        runner = null;
+        if (cancelled && result.getStopReason() == null) {
+            stop(cancelReason);
+        }
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        if (Tracer.isEnabled()) {
+            Tracer.span("session", "session", start, "query", query, "iterations", result.getIterations());
+        }
+        return result;
+    }
+
+    private void runDiagnosticPhase() {
+        // First, ask AI what commands are needed to understand the situation
+        out.println(ANSI_BLUE + "\n[Diagnostic Phase]" + ANSI_RESET + " Analyzing your problem...");
+
+        // Extract commands and their explanations
+        List<String> diagnosticCommands = new ArrayList<>();
+        List<String> commandPurposes = new ArrayList<>();
+        List<Boolean> commandReadOnly = new ArrayList<>();
+
+        String diagPlanPrompt = diagnosticPrompt(true, missingTools);
+        // Picking diagnostic commands is left to the fast model; its answer is escalated to the main
+        // model when it can't be used
+        CommandPlan diagPlan = structured ? askStructured(diagPlanPrompt, true) : null;
+        if (structured && (diagPlan == null || diagPlan.getCommands().isEmpty()) && escalate()) {
+            diagPlan = askStructured(diagPlanPrompt, false);
+        }
+        if (diagPlan != null) {
+            for (PlannedCommand planned : diagPlan.getCommands()) {
+                diagnosticCommands.add(planned.getCommand());
+                commandPurposes.add(planned.getPurpose());
+                commandReadOnly.add(planned.isReadOnly());
+            }
+        } else {
+            String diagPrompt = diagnosticPrompt(false, missingTools);
+            String response = ask(diagPrompt, true);
+            if ((isError(response) || !COMMAND_PATTERN.matcher(response).find()) && escalate()) {
+                response = ask(diagPrompt, false);
+            }
+            recordError(response);
+
+            Matcher cmdMatcher = COMMAND_PATTERN.matcher(response);
+            Matcher purposeMatcher = PURPOSE_PATTERN.matcher(response);
+
+            while (cmdMatcher.find()) {
+                diagnosticCommands.add(cmdMatcher.group(1).trim());
+
+                String purpose = "No explanation provided";
+                if (purposeMatcher.find()) {
+                    purpose = purposeMatcher.group(1).trim();
+                }
+                commandPurposes.add(purpose);
+            }
+
+            // If no commands were found in the structured format, fall back to extracting commands line by line
+            if (diagnosticCommands.isEmpty() && policy.acceptsGuessedCommands()) {
+                diagnosticCommands = Arrays.asList(extractCommands(response));
+                for (int i = 0; i < diagnosticCommands.size(); i++) {
+                    commandPurposes.add("Diagnostic command");
+                }
+            }
+        }
+
+        if (cancelled) {
+            return;
+        }
+        out.println(ANSI_GREEN + "AI: I need to gather information about your system to diagnose the problem." + ANSI_RESET);
+        out.println("I'll run the following diagnostic commands:");
+        Set<String> missing = PathIndex.getDefault().missing(diagnosticCommands);
+
+        // Execute diagnostic commands
+        for (int i = 0; i < diagnosticCommands.size(); i++) {
+            String command = diagnosticCommands.get(i);
+            String purpose = commandPurposes.get(i);
+
+            if (cancelled) break;
+            if (command.trim().isEmpty()) continue;
+
+            out.println("\n" + ANSI_BLUE + "Diagnostic Command " + (i+1) + ":" + ANSI_RESET + " " + command);
+            out.println(ANSI_YELLOW + "Purpose:" + ANSI_RESET + " " + purpose);
+
+            if (replayCommand(DIAGNOSTIC, command, purpose)) continue;
+
+            if (skipMissing(DIAGNOSTIC, command, purpose, missing)) continue;
+
+            boolean dangerous = SafetyChecker.isDangerous(command);
+
+            // In structured mode the AI tells us which diagnostics change the system; confirm those first
+            if (i < commandReadOnly.size() && !commandReadOnly.get(i) && !dangerous &&
+                !policy.confirmModifyingDiagnostic(command)) {
+                out.println("Command skipped.");
+                record(DIAGNOSTIC, command, purpose, "skipped-modifying", null);
+                continue;
+            }
+
+            if (dangerous && !confirmDangerous(command, true)) {
+                out.println("Command skipped.");
+                record(DIAGNOSTIC, command, purpose, "skipped-dangerous", null);
+                continue;
+            }
+
+            // Diagnostics run with lowered priority and resource caps unless they are meant to change something
+            boolean readOnly = i >= commandReadOnly.size() || commandReadOnly.get(i);
+            execute(DIAGNOSTIC, command, purpose, ExecutionProfile.forCommand(readOnly, dangerous));
+        }
+    }
+
+    /**
+     * The prompt that opens the diagnostic phase
+     * @param structured Whether it asks for a typed command plan instead of COMMAND:/PURPOSE: lines
+     * @param missing Tools the AI is told not to suggest
+     */
+    private String diagnosticPrompt(boolean structured, Set<String> missing) {
+        String diagQuestion = "You are a system diagnostic expert. " +
+            "I need to " + query + ". " +
+            "What Linux bash commands should I run to gather sufficient information about the current system state to understand " +
+            "and diagnose this problem effectively? Consider checking relevant logs, processes, system information, " +
+            "configurations, etc. that could help diagnose this specific issue. " +
+            "For each command, provide a brief explanation of why it's useful. " +
+            (missing.isEmpty() ? "" : "These tools are not installed here, so don't suggest them: " +
+                                      String.join(", ", missing) + ". ") +
+            "\n" + systemDetails + "\n";
+        if (structured) {
+            return diagQuestion +
+                "Suggest the 3-5 most useful diagnostic commands, one shell command each, " +
+                "and mark whether each command only reads system state.";
+        }
+        return diagQuestion +
+            "Format your response as follows:\n" +
+            "COMMAND: the_command\n" +
+            "PURPOSE: why this command helps diagnose the problem\n" +
+            "(Repeat for 3-5 most useful diagnostic commands)";
+    }
+
+    /**
+     * @return The AI's verdict ("YES" or "NO, because..."), or null if it gave none
+     */
+    private String runSolutionPhase() {
+        // Now ask AI for solution based on gathered information
+        out.println(ANSI_BLUE + "\n[Solution Phase]" + ANSI_RESET + " Analyzing diagnostic information...");
+
+        String solutionQuestion = "Based on the diagnostic information gathered:\n" + contextHistory +
+            "\n\nWhat commands should I run to solve the following problem: " + query +
+            "\n\nFor each recommended command, explain clearly why it helps solve the problem and what it does.";
+
+        List<String> commands = new ArrayList<>();
+        List<String> explanations = new ArrayList<>();
+        String resolution = null;
+
+        CommandPlan solutionPlan = structured ? askStructured(solutionQuestion +
+            "\nAlso state whether the problem will be resolved once these commands have run, and why.") : null;
+        if (solutionPlan != null) {
+            out.println(ANSI_GREEN + "AI: Based on the diagnostic information, here's my solution:" + ANSI_RESET);
+            for (PlannedCommand planned : solutionPlan.getCommands()) {
+                commands.add(planned.getCommand());
+                explanations.add(planned.getPurpose());
+            }
+            resolution = solutionPlan.isResolved() ? "YES" : "NO, " + solutionPlan.getResolution();
+        } else {
+            String solutionPrompt = solutionQuestion +
+                "\nProvide your response in this format:" +
+                "\nCOMMAND: the_command_to_run" +
+                "\nEXPLANATION: detailed explanation of what this command does and why it helps" +
+                "\n(repeat for each command)" +
+                "\nFinally, end with either \"PROBLEM_RESOLVED: YES\" or \"PROBLEM_RESOLVED: NO, because...\"";
+
+            String response = ask(solutionPrompt);
+            if (cancelled) {
+                return null;
+            }
+            recordError(response);
+
+            out.println(ANSI_GREEN + "AI: Based on the diagnostic information, here's my solution:" + ANSI_RESET);
+            out.println(response);
+
+            Matcher commandMatcher = COMMAND_PATTERN.matcher(response);
+            Matcher explanationMatcher = EXPLANATION_PATTERN.matcher(response);
+            Matcher resolvedMatcher = RESOLVED_PATTERN.matcher(response);
+
+            while (commandMatcher.find()) {
+                commands.add(commandMatcher.group(1).trim());
+
+                String explanation = "No explanation provided";
+                if (explanationMatcher.find()) {
+                    explanation = explanationMatcher.group(1).trim();
+                }
+                explanations.add(explanation);
+            }
+
+            if (resolvedMatcher.find()) {
+                resolution = resolvedMatcher.group(1);
+            }
+        }
+
+        // Execute solution commands
+        Set<String> missing = PathIndex.getDefault().missing(commands);
+        if (resolution != null && !resolution.startsWith("YES")) {
+            prefetchNextDiagnostics(missing);
+        }
+        for (int i = 0; i < commands.size() && !cancelled; i++) {
+            String command = commands.get(i);
+            String explanation = explanations.get(i);
+
+            out.println("\n" + ANSI_BLUE + "Solution Command " + (i+1) + ":" + ANSI_RESET + " " + command);
+            out.println(ANSI_YELLOW + "Explanation:" + ANSI_RESET + " " + explanation);
+
+            if (replayCommand(SOLUTION, command, explanation)) continue;
+
+            if (skipMissing(SOLUTION, command, explanation, missing)) continue;
+
+            boolean dangerous = SafetyChecker.isDangerous(command);
+            if (dangerous && !confirmDangerous(command, false)) {
+                out.println("Command skipped.");
+                record(SOLUTION, command, explanation, "skipped-dangerous", null);
+                continue;
+            }
+
+            if (policy.confirmSolution(command)) {
+                execute(SOLUTION, command, explanation, ExecutionProfile.forCommand(false, dangerous));
+            } else {
+                out.println("Command skipped.");
+                record(SOLUTION, command, explanation, "skipped", null);
+            }
+        }
+
+        return resolution;
+    }
+
+    /**
+     * Send the next iteration's opening diagnostic prompt in the background while this iteration's solution
+     * commands are confirmed and run, so continuing doesn't wait for another AI round trip. Nothing is sent
+     * when no further iteration can start or the budget is nearly used up, and nothing more once discarded
+     * prefetches have cost {@link #PREFETCH_WASTE_CAP_TOKENS}.
+     * @param missing Missing tools of the solution commands, which the next prompt will name
+     */
+    private void prefetchNextDiagnostics(Set<String> missing) {
+        if (cancelled || !policy.mayContinue() || (replay != null && replay.hasMore()) || economizing ||
+            prefetchWastedTokens.sum() >= PREFETCH_WASTE_CAP_TOKENS || budget.approaching(usage, elapsedMillis()) ||
+            budget.exhausted(result.getIterations(), usage, elapsedMillis()) != null) {
+            return;
+        }
+        Set<String> upcoming = new LinkedHashSet<>(missingTools);
+        upcoming.addAll(missing);
+        String prompt = diagnosticPrompt(structured, upcoming);
+        // Usually the prompt is the one this iteration opened with; a cached answer needs no head start
+        if (aiHandler.isCached(prompt, true, structured)) {
+            return;
+        }
+        Prefetch next = new Prefetch(prompt, structured);
+        next.answer = PREFETCHER.submit(() -> {
+            next.sender = Thread.currentThread();
+            try {
+                if (next.aborted) {
+                    return null;
+                }
+                if (next.structured) {
+                    CommandPlan plan = aiHandler.sendStructuredQuery(next.prompt, true, next.usage);
+                    return plan == null ? "" : plan.toJson().toString();
+                }
+                return aiHandler.sendQuery(next.prompt, true, next.usage);
+            } finally {
+                next.sender = null;
+                if (next.finish()) {
+                    wasted(next);
+                }
+            }
+        });
+        prefetch = next;
+    }
+
+    /**
+     * @return The prefetched answer to this prompt, waiting for it if necessary, or null if it wasn't
+     *         prefetched; a prefetch of any other prompt is discarded
+     */
+    private String takePrefetched(String prompt, boolean structured) {
+        Prefetch taken = prefetch;
+        if (taken == null) {
+            return null;
+        }
+        prefetch = null;
+        if (taken.structured != structured || !taken.prompt.equals(prompt)) {
+            discard(taken);
+            return null;
+        }
+        String answer;
+        try {
+            answer = taken.answer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            discard(taken);
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            discard(taken);
+            return null;
+        }
+        usage.add(taken.usage);
+        Tracer.span("prefetch", "ai", taken.start, "used", answer != null);
+        return answer;
+    }
+
+    /**
+     * Abort a prefetch nobody will use; what it cost is accounted for once its call has returned
+     */
+    private void discard(Prefetch unused) {
+        unused.abort();
+        if (unused.discard()) {
+            wasted(unused);
+        }
+        Tracer.span("prefetch", "ai", unused.start, "used", false);
+    }
+
+    /**
+     * Charge a discarded prefetch to the session's budget and to the prefetch waste cap; may run on the
+     * prefetch thread. A call aborted in flight reports no tokens, but its prompt was sent, so the cap
+     * counts an estimate of it.
+     */
+    private void wasted(Prefetch unused) {
+        usage.add(unused.usage);
+        long tokens = unused.usage.getTotalTokens();
+        if (tokens == 0 && unused.usage.getCalls() > 0) {
+            tokens = TokenUsage.estimate(unused.prompt, "").getPromptTokens();
+        }
+        prefetchWastedTokens.add(tokens);
+    }
+
+    /**
+     * Check if problem is resolved and whether to go for another iteration
+     */
+    private boolean shouldContinue(String resolution) {
+        if (resolution != null && resolution.startsWith("YES")) {
+            out.println("\n" + ANSI_GREEN + "✅ AI indicates the problem has been resolved." + ANSI_RESET);
+            return false;
+        }
+
+        if (resolution != null) {
+            out.println("\n" + ANSI_YELLOW + "⚠️ Problem not yet resolved: " + resolution + ANSI_RESET);
+        }
+        // The journal holds a later iteration, so the user already chose to continue
+        if (replay != null && replay.hasMore()) {
+            out.println("\nStarting next iteration...");
+            return true;
+        }
+        String stopReason = budget.exhausted(result.getIterations(), usage, elapsedMillis());
+        if (stopReason != null) {
+            stop(stopReason);
+            return false;
+        }
+        if (!policy.continueIteration(resolution != null)) {
+            out.println("Process terminated by user.");
+            return false;
+        }
+        out.println("\nStarting next iteration...");
+        return true;
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private void stop(String reason) {
+        out.println(ANSI_YELLOW + "Session stopped: " + reason + "." + ANSI_RESET);
+        result.setStopReason(reason);
+    }
+
+    /**
+     * Once the budget is nearly used up, send every prompt to the fast model and drop older command
+     * results from the context, so the remaining budget goes further
+     */
+    private void economizeIfNeeded() {
+        if (economizing || !budget.approaching(usage, elapsedMillis())) {
+            return;
+        }
+        economizing = true;
+        int omitted = compactContext(COMPACTED_CONTEXT_CHARS);
+        out.println(ANSI_YELLOW + "Session budget nearly used up (" + usage.describe() + ")" +
+                    (aiHandler.getFastModel() == null ? "" : "; using " + aiHandler.getFastModel() + " for all prompts") +
+                    (omitted == 0 ? "" : "; " + omitted + " earlier command results dropped from the context") +
+                    "." + ANSI_RESET);
+    }
+
+    /**
+     * Drop the oldest command results from the context until the rest fits in maxChars; the latest
+     * result is always kept, and the next run of any command adds its full output again
+     * @return How many results were dropped
+     */
+    int compactContext(int maxChars) {
+        int keepFrom = contextEntries.size() - 1;
+        while (keepFrom > 0 && contextHistory.length() - contextEntries.get(keepFrom - 1) <= maxChars) {
+            keepFrom--;
+        }
+        if (keepFrom <= 0) {
+            return 0;
+        }
+        String marker = "\n[" + keepFrom + " earlier command results omitted to stay within the session budget]";
+        int cut = contextEntries.get(keepFrom);
+        contextHistory.replace(contextHeaderLength, cut, marker);
+        int shift = cut - contextHeaderLength - marker.length();
+        List<Integer> kept = new ArrayList<>();
+        for (int i = keepFrom; i < contextEntries.size(); i++) {
+            kept.add(contextEntries.get(i) - shift);
+        }
+        contextEntries.clear();
+        contextEntries.addAll(kept);
+        // Later runs must not be diffed against output the AI no longer sees
+        outputHistory.clear();
+        return keepFrom;
+    }
+
+    String getContext() {
+        return contextHistory.toString();
+    }
+
+    private void appendContext(String entry) {
+        contextEntries.add(contextHistory.length());
+        contextHistory.append(entry);
+    }
+
+    private void recordError(String response) {
+        if (isError(response)) {
+            result.setError(response);
+        }
+    }
+
+    private static boolean isError(String response) {
+        return response.startsWith("[ERROR]") || response.startsWith("Unknown provider:");
+    }
+
+    /**
+     * @return true if a fast model is configured and its unusable answer should be retried with the main model
+     */
+    private boolean escalate() {
+        if (cancelled || aiHandler.getFastModel() == null) {
+            return false;
+        }
+        out.println(ANSI_YELLOW + "The answer of " + aiHandler.getFastModel() + " could not be used; asking " +
+                    aiHandler.getModel() + " instead." + ANSI_RESET);
+        return true;
+    }
+
+    /**
+     * Skip a command whose tools aren't installed instead of spending an execution on "command not found"
+     * @param missing The missing tools of all commands of the phase
+     * @return true if the command was skipped
+     */
+    private boolean skipMissing(String phase, String command, String purpose, Set<String> missing) {
+        if (missing.isEmpty()) {
+            return false;
+        }
+        List<String> absent = new ArrayList<>();
+        for (String executable : PathIndex.executables(command)) {
+            if (missing.contains(executable)) {
+                absent.add(executable);
+            }
+        }
+        if (absent.isEmpty()) {
+            return false;
+        }
+        out.println(ANSI_YELLOW + "Command skipped: " + String.join(", ", absent) +
+                    (absent.size() == 1 ? " is" : " are") + " not installed." + ANSI_RESET);
+        missingTools.addAll(absent);
+        record(phase, command, purpose, "skipped-missing", null);
+        return true;
+    }
+
+    private boolean confirmDangerous(String command, boolean diagnostic) {
+        String reason = SafetyChecker.getDangerReason(command);
+        out.println(ANSI_RED + (diagnostic ? "[WARNING] This diagnostic command is considered potentially dangerous."
+                                           : "[WARNING] This command is considered potentially dangerous.") + ANSI_RESET);
+        if (reason != null) {
+            out.println(ANSI_RED + "Reason: " + reason + ANSI_RESET);
+        }
+        return policy.confirmDangerous(command, diagnostic);
+    }
+
+    private void execute(String phase, String command, String purpose, ExecutionProfile profile) {
+        try {
+            out.println(ANSI_BLUE + "Executing: " + ANSI_RESET + command);
+            // Lines are rendered as the command produces them; the full output is still kept for the AI
+            OutputFormatter formatter = new OutputFormatter(out);
+            Path logFile = LogScanner.logFileOf(command);
+            String output = logFile != null ? scanLog(logFile, command, profile, formatter)
+                                            : SystemExecutor.executeCommandString(command, profile, formatter);
+            formatter.finish();
+            Metrics.OUTPUT_FORMAT.record(formatter.getFormatNanos());
+            out.println();
+
+            if (cancelled) {
+                // Not journaled, so a resumed session runs the command again
+                result.addCommand(phase, command, purpose, "cancelled", output);
+                return;
+            }
+            record(phase, command, purpose, "executed", output);
+        } catch (Exception e) {
+            String errorMsg = "Error executing command: " + e.getMessage();
+            out.println(ANSI_RED + errorMsg + ANSI_RESET);
+            record(phase, command, purpose, "failed", errorMsg);
+        }
+    }
+
+    /**
+     * Answer a command that would dump a whole log file with only its relevant lines
+     */
+    private String scanLog(Path logFile, String command, ExecutionProfile profile, OutputFormatter formatter) {
+        String output;
+        try {
+            output = LogScanner.forQuery(query).scan(logFile);
+        } catch (IOException e) {
+            return SystemExecutor.executeCommandString(command, profile, formatter);
+        }
+        int start = 0;
+        int newline;
+        while ((newline = output.indexOf('\n', start)) != -1) {
+            formatter.accept(output.substring(start, newline));
+            start = newline + 1;
+        }
+        formatter.accept(output.substring(start));
+        return output;
+    }
+
+    /**
+     * Add the outcome of a command to the context, the result and the journal
+     * @param output The command output, the error message of a failed command, or null if it did not run
+     */
+    private void record(String phase, String command, String purpose, String status, String output) {
+        appendContext(contextEntry(phase, command, status, contextOutput(command, status, output)));
+        result.addCommand(phase, command, purpose, status, output);
+        if (journal != null) {
+            JSONObject outcome = new JSONObject()
+                .put("phase", phase)
+                .put("command", command)
+                .put("purpose", purpose)
+                .put("status", status);
+            if (output != null) {
+                outcome.put("output", output);
+            }
+            writeJournal(SessionJournal.Type.COMMAND, outcome.toString());
+        }
+    }
+
+    /**
+     * A command that ran before in this session contributes only what changed in its output
+     */
+    private String contextOutput(String command, String status, String output) {
+        return "executed".equals(status) ? outputHistory.describe(command, output) : output;
+    }
+
+    /**
+     * How a command outcome is presented to the AI in the solution prompt
+     */
+    static String contextEntry(String phase, String command, String status, String output) {
+        switch (status) {
+            case "executed":
+                return (DIAGNOSTIC.equals(phase) ? "\nCommand: " : "\nExecuted: ") + command + "\nOutput: " + output;
+            case "failed":
+                return "\nCommand (failed): " + command + "\nError: " + output;
+            case "skipped-modifying":
+                return "\nCommand (skipped - modifies the system): " + command;
+            case "skipped-missing":
+                return (DIAGNOSTIC.equals(phase) ? "\nCommand (skipped - not installed): " : "\nSkipped (not installed): ") + command;
+            case "skipped-dangerous":
+                return (DIAGNOSTIC.equals(phase) ? "\nCommand (skipped - flagged as dangerous): " : "\nSkipped: ") + command;
+            default:
+                return "\nSkipped: " + command;
+        }
+    }
+
+    /**
+     * Reuse the journaled outcome of a command when resuming a session
+     * @return true if the outcome came from the journal and the command must not be run
+     */
+    private boolean replayCommand(String phase, String command, String purpose) {
+        JSONObject outcome = replay == null ? null : replay.nextCommand(command);
+        if (outcome == null) {
+            return false;
+        }
+        String status = outcome.getString("status");
+        String output = outcome.optString("output", null);
+        out.println(ANSI_BLUE + "From saved session (" + status + ")" + ANSI_RESET);
+        if (output != null) {
+            out.println(formatCommandOutput(output));
+        }
+        appendContext(contextEntry(phase, command, status, contextOutput(command, status, output)));
+        result.addCommand(phase, command, purpose, status, output);
+        return true;
+    }
+
+    private String ask(String prompt) {
+        return ask(prompt, false);
+    }
+
+    /**
+     * @param fast Whether the fast model, if one is configured, is good enough for this prompt
+     */
+    private String ask(String prompt, boolean fast) {
+        String recorded = replay == null ? null : replay.nextAnswer(SessionJournal.Type.RESPONSE);
+        if (recorded != null) {
+            return recorded;
+        }
+        if (cancelled) {
+            return AIHandler.CANCELLED_RESPONSE;
+        }
+        writeJournal(SessionJournal.Type.PROMPT, prompt);
+        String response = takePrefetched(prompt, false);
+        if (response == null) {
+            response = aiHandler.sendQuery(prompt, fast || economizing, usage);
+        }
+        if (cancelled) {
+            return AIHandler.CANCELLED_RESPONSE;
+        }
+        writeJournal(SessionJournal.Type.RESPONSE, response);
+        return response;
+    }
+
+    private CommandPlan askStructured(String prompt) {
+        return askStructured(prompt, false);
+    }
+
+    private CommandPlan askStructured(String prompt, boolean fast) {
+        String recorded = replay == null ? null : replay.nextAnswer(SessionJournal.Type.PLAN);
+        if (recorded != null) {
+            // An empty record means the provider produced no plan and the session fell back to text
+            return recorded.isEmpty() ? null : CommandPlan.fromJson(recorded);
+        }
+        if (cancelled) {
+            return null;
+        }
+        writeJournal(SessionJournal.Type.PROMPT, prompt);
+        String prefetched = takePrefetched(prompt, true);
+        CommandPlan plan = prefetched == null ? aiHandler.sendStructuredQuery(prompt, fast || economizing, usage)
+                         : prefetched.isEmpty() ? null : CommandPlan.fromJson(prefetched);
+        if (cancelled) {
+            return null;
+        }
+        writeJournal(SessionJournal.Type.PLAN, plan == null ? "" : plan.toJson().toString());
+        return plan;
+    }
+
+    private void writeJournal(SessionJournal.Type type, String text) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(type, text);
+        } catch (IOException e) {
+            // Losing the journal must not end the session
+            out.println(ANSI_RED + "Session journal disabled: " + e.getMessage() + ANSI_RESET);
+            journal = null;
+        }
+    }
+
+    /**
+     * Format command output that is already in memory, e.g. when replaying a journal
+     * - Limit length if too long
+     * - Add indicators for truncation
+     */
+    static String formatCommandOutput(String output) {
+        return OutputFormatter.format(output);
+    }
+
+    static String[] extractCommands(String response) {
+        // Remove any explanatory text and keep only lines that look like commands
+        String[] lines = response.split("\\n");
+        StringBuilder commandsBuilder = new StringBuilder();
+
+        for (String line : lines) {
+            line = line.trim();
+            // Skip empty lines or lines that are clearly not commands
+            if (line.isEmpty() || line.startsWith("Here") || line.startsWith("First") ||
+                line.contains("explanation") || line.startsWith("These commands") ||
+                line.startsWith("The following") || line.startsWith("COMMAND:") ||
+                line.startsWith("PURPOSE:") || line.contains("```")) {
+                continue;
+            }
+
+            // Only include lines that look like shell commands
+            if (line.matches("^[a-zA-Z0-9_.\\-/\\s]+.*")) {
+                commandsBuilder.append(line).append("\n");
+            }
+        }
+
+        return commandsBuilder.toString().split("\\n");
+    }
+}
@@ -0,0 +1,346 @@
+package cli;
+
+import static cli.Main.ANSI_BLUE;
+import static cli.Main.ANSI_GREEN;
+import static cli.Main.ANSI_RED;
+import static cli.Main.ANSI_RESET;
+import static cli.Main.ANSI_YELLOW;
+
+import ai.AIHandler;
+import ai.CommandPlan;
+import ai.PlannedCommand;
+import ai.UsageTracker;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import picocli.CommandLine;
+import safety.SafetyChecker;
+import system.ExecutionProfile;
+import system.LogScanner;
+import system.PathIndex;
+import system.SystemExecutor;
+import system.TimeoutPolicy;
+
+/**
+ * Continuous monitoring of one condition at close to no AI cost.
+ * The AI picks a set of read-only diagnostic commands once; they are re-run on a schedule and their output is
+ * compared with the output the AI last saw. Identical output costs one string comparison, and output whose
+ * lines differ only in numbers within the --tolerance percentage counts as unchanged, so the AI is asked again
+ * only when something changes or drifts past the threshold.
+ * Free-text answers don't say whether a command only reads, so the watched set is shown and confirmed once
+ * before anything runs; with --structured, commands the AI marks as modifying are dropped instead.
+ */
+@CommandLine.Command(name = "watch", mixinStandardHelpOptions = true,
+                     description = "Watch a condition: the AI picks diagnostic commands once, they are re-run every interval, " +
+                                   "and the AI is only asked again when their output changes meaningfully. " +
+                                   "Suggested fixes are printed, never executed.")
+public class WatchCommand implements Callable<Integer> {
+    private static final Pattern COMMAND_PATTERN = Pattern.compile("COMMAND:\\s*([^\\n]+)(?:\\n(?:PURPOSE|EXPLANATION):\\s*([^\\n]+))?");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("-?\\d+(?:\\.\\d+)?");
+    private static final Pattern INTERVAL_PATTERN = Pattern.compile("(\\d+)\\s*(ms|s|m|h)?");
+    private static final DateTimeFormatter CLOCK = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final int CONTEXT_LINES = 2;
+
+    @CommandLine.Parameters(arity = "1..*", description = "The condition to watch, e.g. \"disk space on /var\"")
+    private String[] words;
+
+    @CommandLine.Option(names = "--interval", defaultValue = "30s",
+                        description = "Time between checks, e.g. 30s, 5m or 1h (default: ${DEFAULT-VALUE})")
+    private String interval;
+
+    @CommandLine.Option(names = "--count", defaultValue = "0", description = "Stop after N checks (default: run until interrupted)")
+    private int count;
+
+    @CommandLine.Option(names = "--tolerance", defaultValue = "10", paramLabel = "PERCENT",
+                        description = "How far a number may move before it counts as a change (default: ${DEFAULT-VALUE})")
+    private double tolerance;
+
+    @CommandLine.Mixin
+    private ProviderOptions providerOptions = new ProviderOptions();
+
+    @CommandLine.Mixin
+    private MetricsOptions metricsOptions = new MetricsOptions();
+
+    private final List<Watched> watched = new ArrayList<>();
+    private final UsageTracker usage = new UsageTracker();
+
+    /**
+     * A diagnostic command and the output the AI last saw from it
+     */
+    private static final class Watched {
+        final String command;
+        final String purpose;
+        // Parsed once for commands that don't need a shell; null otherwise
+        final List<String> argv;
+        // Set for commands that dump a log file, which is scanned in-process instead
+        final Path logFile;
+        final String signature;
+        String baseline;
+
+        Watched(String command, String purpose) {
+            this.command = command;
+            this.purpose = purpose;
+            this.signature = TimeoutPolicy.signature(command);
+            this.logFile = LogScanner.logFileOf(command);
+            this.argv = logFile == null && !SystemExecutor.needsShell(command) ? SystemExecutor.parseCommand(command) : null;
+        }
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        long intervalMillis;
+        try {
+            intervalMillis = parseInterval(interval);
+        } catch (IllegalArgumentException e) {
+            throw new CommandLine.ParameterException(new CommandLine(this), e.getMessage());
+        }
+
+        AIHandler aiHandler;
+        try {
+            aiHandler = providerOptions.createHandler();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        metricsOptions.startExport();
+        String systemDetails = TroubleshootingSession.describeSystem();
+
+        if (plan(aiHandler, systemDetails, new Scanner(System.in), System.out) == 0) {
+            System.out.println(ANSI_RED + "The AI suggested no commands that are safe to run unattended." + ANSI_RESET);
+            return 1;
+        }
+        try {
+            for (int i = 0; count == 0 || i < count; i++) {
+                Thread.sleep(intervalMillis);
+                check(aiHandler, systemDetails, System.out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("\nWatch used " + usage.describe() + ".");
+        return 0;
+    }
+
+    /**
+     * Ask the AI for the commands to watch and take their first output as the baseline
+     * @param in Answers whether to watch commands picked from a free-text answer
+     * @return How many commands are watched
+     */
+    int plan(AIHandler aiHandler, String systemDetails, Scanner in, PrintStream out) {
+        String condition = String.join(" ", words);
+        out.println(ANSI_BLUE + "[Watch]" + ANSI_RESET + " Choosing commands to watch: " + condition);
+        String question = "I want to keep watching this condition on a Linux system: " + condition + ". " +
+            "Which read-only Linux bash commands show its current state? They will be run again every " + interval +
+            ", so prefer quick commands whose output only changes when the state does " +
+            "(no clocks, uptimes or process ids).\n" + systemDetails + "\n";
+
+        List<String[]> commands = new ArrayList<>();
+        boolean readOnlyMarked = false;
+        CommandPlan commandPlan = providerOptions.structured ? aiHandler.sendStructuredQuery(question +
+            "Suggest 1-5 commands, one shell command each, and mark whether each command only reads system state.",
+            true, usage) : null;
+        if (commandPlan != null) {
+            readOnlyMarked = true;
+            for (PlannedCommand planned : commandPlan.getCommands()) {
+                if (!planned.isReadOnly()) {
+                    out.println(ANSI_YELLOW + "Skipping " + planned.getCommand() + " (modifies the system)" + ANSI_RESET);
+                    continue;
+                }
+                commands.add(new String[] {planned.getCommand(), planned.getPurpose()});
+            }
+        } else {
+            String response = aiHandler.sendQuery(question +
+                "Format your response as follows:\n" +
+                "COMMAND: the_command\n" +
+                "PURPOSE: what its output shows about the condition\n" +
+                "(Repeat for 1-5 commands)", true, usage);
+            Matcher matcher = COMMAND_PATTERN.matcher(response);
+            while (matcher.find()) {
+                commands.add(new String[] {matcher.group(1).trim(), matcher.group(2) == null ? "" : matcher.group(2).trim()});
+            }
+        }
+
+        List<String> proposed = new ArrayList<>();
+        for (String[] command : commands) {
+            proposed.add(command[0]);
+        }
+        Set<String> missing = PathIndex.getDefault().missing(proposed);
+        List<Watched> candidates = new ArrayList<>();
+        for (String[] command : commands) {
+            List<String> absent = new ArrayList<>(PathIndex.executables(command[0]));
+            absent.retainAll(missing);
+            if (!absent.isEmpty()) {
+                out.println(ANSI_YELLOW + "Skipping " + command[0] + " (" + String.join(", ", absent) + " not installed)" + ANSI_RESET);
+                continue;
+            }
+            if (SafetyChecker.isDangerous(command[0])) {
+                out.println(ANSI_YELLOW + "Skipping " + command[0] + " (" + SafetyChecker.getDangerReason(command[0]) + ")" + ANSI_RESET);
+                continue;
+            }
+            candidates.add(new Watched(command[0], command[1]));
+        }
+
+        if (!readOnlyMarked && !candidates.isEmpty()) {
+            // Nothing says these only read, and they will run unattended from now on
+            out.println("The AI suggested these commands:");
+            for (Watched entry : candidates) {
+                out.println("  " + entry.command);
+            }
+            out.print(ANSI_YELLOW + "Run them every " + interval + " without asking again? (yes/no): " + ANSI_RESET);
+            if (!in.hasNextLine() || !in.nextLine().trim().equalsIgnoreCase("yes")) {
+                out.println("Not watching. Use --structured to keep only commands the AI marks as read-only.");
+                return 0;
+            }
+        }
+        for (Watched entry : candidates) {
+            entry.baseline = run(entry, condition);
+            watched.add(entry);
+            out.println(ANSI_GREEN + "Watching: " + ANSI_RESET + entry.command +
+                        (entry.purpose.isEmpty() ? "" : " (" + entry.purpose + ")"));
+        }
+        return watched.size();
+    }
+
+    /**
+     * Run the watched commands once and ask the AI about the output that changed meaningfully
+     * @return true if the AI was asked
+     */
+    boolean check(AIHandler aiHandler, String systemDetails, PrintStream out) {
+        String condition = String.join(" ", words);
+        long start = System.nanoTime();
+        StringBuilder changes = new StringBuilder();
+        for (Watched entry : watched) {
+            String output = run(entry, condition);
+            // Identical output, the common case, costs one comparison
+            if (output.equals(entry.baseline) || !meaningfulChange(entry.baseline, output, tolerance)) {
+                continue;
+            }
+            String diff = LineDiff.unified(lines(entry.baseline), lines(output), CONTEXT_LINES);
+            changes.append("\nCommand: ").append(entry.command).append(diff == null || diff.length() >= output.length()
+                ? "\nOutput now: " + output
+                : "\nChange (unified diff): \n" + diff);
+            // Later changes are measured against what the AI has seen, so slow drift still adds up
+            entry.baseline = output;
+        }
+
+        String clock = "[" + LocalTime.now().format(CLOCK) + "] ";
+        if (changes.length() == 0) {
+            out.println(clock + "No meaningful change (" + watched.size() + " commands, " +
+                        (System.nanoTime() - start) / 1_000_000 + " ms)");
+            return false;
+        }
+
+        out.println(clock + ANSI_YELLOW + "Output changed; asking the AI." + ANSI_RESET);
+        String response = aiHandler.sendQuery("I am watching this condition on a Linux system: " + condition + ".\n" +
+            systemDetails + "\nThe output of my monitoring commands changed since the last check:" + changes +
+            "\n\nDoes this change need attention? Start your answer with \"STATUS: OK\" or \"STATUS: ALERT\", " +
+            "then explain why in one or two sentences. For ALERT, suggest what to do as:\n" +
+            "COMMAND: the_command_to_run\n" +
+            "EXPLANATION: why it helps", true, usage);
+        out.println((response.contains("STATUS: ALERT") ? ANSI_RED : ANSI_GREEN) + "AI: " + ANSI_RESET + response);
+        return true;
+    }
+
+    private static String run(Watched entry, String condition) {
+        if (entry.logFile != null) {
+            try {
+                return LogScanner.forQuery(condition).scan(entry.logFile);
+            } catch (IOException e) {
+                // Fall through to running the command itself
+            }
+        }
+        // Watched commands are read-only and safe, so they always run with the diagnostic caps
+        return entry.argv != null ? SystemExecutor.executeCommand(entry.argv, entry.signature, ExecutionProfile.DIAGNOSTIC, null)
+                                  : SystemExecutor.executeCommandString(entry.command, ExecutionProfile.DIAGNOSTIC, null);
+    }
+
+    /**
+     * @return false if the outputs have the same lines, apart from numbers that moved by at most
+     *         tolerancePercent of their larger value
+     */
+    static boolean meaningfulChange(String before, String after, double tolerancePercent) {
+        if (before.equals(after)) {
+            return false;
+        }
+        List<String> beforeLines = lines(before);
+        List<String> afterLines = lines(after);
+        if (beforeLines.size() != afterLines.size()) {
+            return true;
+        }
+        for (int i = 0; i < beforeLines.size(); i++) {
+            String line = beforeLines.get(i);
+            if (!line.equals(afterLines.get(i)) && !withinTolerance(line, afterLines.get(i), tolerancePercent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean withinTolerance(String before, String after, double tolerancePercent) {
+        Matcher a = NUMBER_PATTERN.matcher(before);
+        Matcher b = NUMBER_PATTERN.matcher(after);
+        int textStartA = 0;
+        int textStartB = 0;
+        while (true) {
+            boolean foundA = a.find();
+            boolean foundB = b.find();
+            if (foundA != foundB) {
+                return false;
+            }
+            // The text between numbers must not change at all
+            if (!before.substring(textStartA, foundA ? a.start() : before.length())
+                       .equals(after.substring(textStartB, foundB ? b.start() : after.length()))) {
+                return false;
+            }
+            if (!foundA) {
+                return true;
+            }
+            double x = Double.parseDouble(a.group());
+            double y = Double.parseDouble(b.group());
+            if (Math.abs(x - y) > Math.max(Math.abs(x), Math.abs(y)) * tolerancePercent / 100) {
+                return false;
+            }
+            textStartA = a.end();
+            textStartB = b.end();
+        }
+    }
+
+    private static List<String> lines(String output) {
+        return Arrays.asList(output.split("\n", -1));
+    }
+
+    /**
+     * @param interval e.g. "500ms", "30s", "5m", "1h"; a bare number means seconds
+     * @return The interval in milliseconds
+     * @throws IllegalArgumentException if the interval is malformed or not positive
+     */
+    static long parseInterval(String interval) {
+        Matcher matcher = INTERVAL_PATTERN.matcher(interval.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid --interval '" + interval + "', expected e.g. 30s, 5m or 1h");
+        }
+        long value = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2) == null ? "s" : matcher.group(2);
+        long millis;
+        switch (unit) {
+            case "ms": millis = value; break;
+            case "m": millis = value * 60_000; break;
+            case "h": millis = value * 3_600_000; break;
+            default: millis = value * 1000; break;
+        }
+        if (millis <= 0) {
+            throw new IllegalArgumentException("--interval must be positive");
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,251 @@
+package journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped record of one troubleshooting session under ~/.sysai/sessions.
+ * Text is encoded straight into the mapping, so large command outputs are not copied onto the heap
+ * to be written, and records are only decoded when read back.
+ *
+ * <p>File layout: an 8-byte magic, then records of
+ * [payload length: int][type: byte][CRC32 of payload: int][UTF-8 payload].
+ * The length is stored last, so a record cut short by a crash still reads as zero and marks the end
+ * of the journal; a CRC mismatch does the same for torn pages after a power loss.</p>
+ */
+public class SessionJournal implements AutoCloseable {
+    /**
+     * Kinds of journal records
+     */
+    public enum Type {
+        /** Session metadata as JSON: query, provider, model, start time */
+        META,
+        /** Prompt sent to the AI */
+        PROMPT,
+        /** Free-text answer of the AI */
+        RESPONSE,
+        /** Structured answer of the AI as JSON, or empty if the provider produced no plan */
+        PLAN,
+        /** Outcome of one proposed command as JSON */
+        COMMAND,
+        /** The AI's resolution verdict at the end of an iteration */
+        RESOLUTION
+    }
+
+    private static final long MAGIC = 0x53595341494A3031L; // "SYSAIJ01"
+    private static final String EMPTY_PAYLOAD = "\0";
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 9;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final String SUFFIX = ".journal";
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9-]+");
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final String id;
+    private final Path file;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final List<Record> records = new ArrayList<>();
+    private MappedByteBuffer buffer;
+    private int end;
+
+    /**
+     * A record read back from the journal; its payload is decoded on demand
+     */
+    public final class Record {
+        private final Type type;
+        private final int offset;
+        private final int length;
+
+        private Record(Type type, int offset, int length) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String text() {
+            synchronized (SessionJournal.this) {
+                String text = StandardCharsets.UTF_8.decode(buffer.slice(offset, length)).toString();
+                return text.equals(EMPTY_PAYLOAD) ? "" : text;
+            }
+        }
+    }
+
+    private SessionJournal(String id, Path file, FileChannel channel) {
+        this.id = id;
+        this.file = file;
+        this.channel = channel;
+    }
+
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".sysai", "sessions");
+    }
+
+    /**
+     * Start a new journal with a fresh id
+     */
+    public static SessionJournal create(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String id = LocalDateTime.now().format(ID_FORMAT) + "-" +
+                    Integer.toHexString(ThreadLocalRandom.current().nextInt(0x1000, 0x10000));
+        Path file = directory.resolve(id + SUFFIX);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // Journals hold command output, which may include secrets; keep them private to the owner
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; rely on the user's home directory permissions
+        }
+        SessionJournal journal = new SessionJournal(id, file, channel);
+        journal.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_CAPACITY);
+        journal.buffer.putLong(0, MAGIC);
+        journal.end = FILE_HEADER_BYTES;
+        return journal;
+    }
+
+    /**
+     * Reopen an existing journal, read back its intact records and continue appending after them
+     * @throws IllegalArgumentException if the id is malformed or no such journal exists
+     */
+    public static SessionJournal open(Path directory, String id) throws IOException {
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid session id: " + id);
+        }
+        Path file = directory.resolve(id + SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No saved session with id " + id + " in " + directory);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SessionJournal journal = new SessionJournal(id, file, channel);
+        long size = channel.size();
+        journal.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if (size < FILE_HEADER_BYTES || journal.buffer.getLong(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a session journal: " + file);
+        }
+        journal.scan();
+        return journal;
+    }
+
+    private void scan() {
+        int position = FILE_HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            int typeIndex = buffer.get(position + 4);
+            int payload = position + RECORD_HEADER_BYTES;
+            if (length <= 0 || typeIndex < 0 || typeIndex >= Type.values().length ||
+                payload + (long) length > buffer.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(payload, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 5)) {
+                break;
+            }
+            records.add(new Record(Type.values()[typeIndex], payload, length));
+            position = payload + length;
+        }
+        end = position;
+        // Clear whatever a crash left behind so the next append starts from a clean end marker
+        for (int i = end; i < Math.min(buffer.capacity(), end + RECORD_HEADER_BYTES); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Records read back when the journal was opened, oldest first
+     */
+    public List<Record> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * Append a record; it is visible to a reader of the file as soon as this returns,
+     * and survives a crash of this process
+     */
+    public synchronized void append(Type type, String text) throws IOException {
+        if (text.isEmpty()) {
+            // A zero length marks the end of the journal, so store empty payloads as a lone NUL
+            text = EMPTY_PAYLOAD;
+        }
+        int payload = end + RECORD_HEADER_BYTES;
+        ensureCapacity(payload + (long) Math.ceil(text.length() * encoder.maxBytesPerChar()));
+        ByteBuffer target = buffer.slice(payload, buffer.capacity() - payload);
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), target, true);
+        encoder.flush(target);
+
+        int length = target.position();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(payload, length));
+        buffer.put(end + 4, (byte) type.ordinal());
+        buffer.putInt(end + 5, (int) crc.getValue());
+        buffer.putInt(end, length);
+        end = payload + length;
+    }
+
+    /**
+     * Flush appended records to the storage device, e.g. at the end of a phase
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        // Leave room for the zero length that terminates the journal
+        required += RECORD_HEADER_BYTES;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Session journal is full: " + file);
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity = Math.min(capacity * 2, Integer.MAX_VALUE);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Flush and trim the file to the records actually written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.truncate(end);
+        channel.close();
+    }
+}
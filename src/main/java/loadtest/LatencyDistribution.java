@@ -0,0 +1,91 @@
+package loadtest;
+
+import java.util.Random;
+
+/**
+ * Simulated time-to-first-byte of the mock provider.
+ * Parsed from a compact spec so it can be given on the command line:
+ * "fixed:200", "uniform:100-500" or "lognormal:300:0.5" (median ms and sigma).
+ */
+public final class LatencyDistribution {
+    private enum Kind { FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(Kind kind, double a, double b) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution fixed(long millis) {
+        return new LatencyDistribution(Kind.FIXED, millis, 0);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().toLowerCase().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new LatencyDistribution(Kind.FIXED, nonNegative(parts[1]), 0);
+                case "uniform": {
+                    String[] range = parts[1].split("-");
+                    double min = nonNegative(range[0]);
+                    double max = nonNegative(range[1]);
+                    if (max < min) {
+                        throw new IllegalArgumentException("Latency range is reversed: " + spec);
+                    }
+                    return new LatencyDistribution(Kind.UNIFORM, min, max);
+                }
+                case "lognormal":
+                    return new LatencyDistribution(Kind.LOGNORMAL, nonNegative(parts[1]),
+                                                   parts.length > 2 ? nonNegative(parts[2]) : 0.5);
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency spec '" + spec +
+                "'. Use fixed:MS, uniform:MIN-MAX or lognormal:MEDIAN[:SIGMA]");
+        }
+    }
+
+    /**
+     * @return One latency sample in milliseconds
+     */
+    public long sampleMillis(Random random) {
+        switch (kind) {
+            case UNIFORM:
+                return Math.round(a + random.nextDouble() * (b - a));
+            case LOGNORMAL:
+                // The median of a log-normal distribution is exp(mu)
+                return Math.round(a * Math.exp(b * random.nextGaussian()));
+            default:
+                return Math.round(a);
+        }
+    }
+
+    private static double nonNegative(String value) {
+        double parsed = Double.parseDouble(value);
+        if (parsed < 0) {
+            throw new NumberFormatException("negative");
+        }
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case UNIFORM:
+                return "uniform:" + a + "-" + b;
+            case LOGNORMAL:
+                return "lognormal:" + a + ":" + b;
+            default:
+                return "fixed:" + a;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package loadtest;
+
+import ai.FakeProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-process stand-in for an LLM provider, listening on localhost.
+ * Speaks the OpenAI chat-completions and Gemini generateContent wire formats (text and structured),
+ * answers with scripted COMMAND: responses after a simulated latency, and can inject errors.
+ * Point an AIHandler at {@link #getBaseUrl()} to exercise the real HTTP path without API quota.
+ */
+public class MockLLMServer implements AutoCloseable {
+    static final List<String> DEFAULT_DIAGNOSTIC_RESPONSES = List.of(FakeProvider.DIAGNOSTIC_RESPONSE);
+
+    static final List<String> DEFAULT_SOLUTION_RESPONSES = List.of(FakeProvider.SOLUTION_RESPONSE);
+
+    private static final Pattern COMMAND_PATTERN = Pattern.compile("COMMAND:\\s*([^\\n]+)(?:\\n(?:PURPOSE|EXPLANATION):\\s*([^\\n]+))?");
+
+    private LatencyDistribution latency = LatencyDistribution.fixed(0);
+    private double tokensPerSecond;
+    private double errorRate;
+    private int errorStatus = 500;
+    private List<String> diagnosticResponses = DEFAULT_DIAGNOSTIC_RESPONSES;
+    private List<String> solutionResponses = DEFAULT_SOLUTION_RESPONSES;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final Map<String, LongAdder> modelRequests = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Delay before each answer is sent
+     */
+    public MockLLMServer latency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Simulated generation speed; adds (answer tokens / rate) to every answer. 0 disables it.
+     * Tokens are approximated as four characters each.
+     */
+    public MockLLMServer tokensPerSecond(double tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+        return this;
+    }
+
+    /**
+     * Answer this fraction of requests with an error status instead of a completion
+     */
+    public MockLLMServer errors(double errorRate, int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * Replace the scripted answers; one of each list is picked at random per request
+     * @param diagnosticResponses Answers to diagnostic prompts, in COMMAND:/PURPOSE: format
+     * @param solutionResponses Answers to solution prompts, in COMMAND:/EXPLANATION: format ending with PROBLEM_RESOLVED
+     */
+    public MockLLMServer script(List<String> diagnosticResponses, List<String> solutionResponses) {
+        this.diagnosticResponses = List.copyOf(diagnosticResponses);
+        this.solutionResponses = List.copyOf(solutionResponses);
+        return this;
+    }
+
+    /**
+     * Bind to an ephemeral port on the loopback interface and start answering
+     */
+    public MockLLMServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Handlers sleep to simulate latency, so every request needs its own thread
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-llm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return Base URL to pass as --base-url for either the OpenAI or the Gemini provider
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return Requests that named this model
+     */
+    public long getRequests(String model) {
+        LongAdder count = modelRequests.get(model);
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            String path = exchange.getRequestURI().getPath();
+            boolean gemini = path.endsWith(":generateContent");
+            if (!"POST".equals(exchange.getRequestMethod()) || !(gemini || path.endsWith("/chat/completions"))) {
+                send(exchange, 404, error("No mock endpoint at " + path));
+                return;
+            }
+
+            JSONObject request;
+            try {
+                request = new JSONObject(readBody(exchange));
+            } catch (JSONException e) {
+                send(exchange, 400, error("Malformed request body: " + e.getMessage()));
+                return;
+            }
+
+            String model = gemini ? path.substring(path.lastIndexOf('/') + 1, path.lastIndexOf(':')) : request.optString("model");
+            modelRequests.computeIfAbsent(model, m -> new LongAdder()).increment();
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            sleep(latency.sampleMillis(random));
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                injectedErrors.increment();
+                send(exchange, errorStatus, error("Injected failure"));
+                return;
+            }
+
+            String prompt = gemini ? geminiPrompt(request) : openAiPrompt(request);
+            boolean solution = prompt.contains("PROBLEM_RESOLVED") || prompt.contains("will be resolved");
+            List<String> candidates = solution ? solutionResponses : diagnosticResponses;
+            String answer = candidates.get(random.nextInt(candidates.size()));
+
+            boolean structured = gemini ? request.optJSONObject("generationConfig", new JSONObject()).has("responseSchema")
+                                        : request.has("tools");
+            if (structured) {
+                answer = toPlan(answer, !solution).toString();
+            }
+            if (tokensPerSecond > 0) {
+                sleep(Math.round(answer.length() / 4.0 / tokensPerSecond * 1000));
+            }
+            int promptTokens = tokens(prompt);
+            int completionTokens = tokens(answer);
+            send(exchange, 200, gemini ? geminiResponse(answer, promptTokens, completionTokens)
+                                       : openAiResponse(answer, structured, promptTokens, completionTokens));
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+        return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static String openAiPrompt(JSONObject request) {
+        JSONArray messages = request.optJSONArray("messages");
+        if (messages == null || messages.isEmpty()) {
+            return "";
+        }
+        return messages.getJSONObject(messages.length() - 1).optString("content", "");
+    }
+
+    private static String geminiPrompt(JSONObject request) {
+        try {
+            return request.getJSONArray("contents").getJSONObject(0)
+                          .getJSONArray("parts").getJSONObject(0).optString("text", "");
+        } catch (JSONException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Convert a scripted text answer into the structured command plan format
+     */
+    static JSONObject toPlan(String answer, boolean readOnly) {
+        JSONArray commands = new JSONArray();
+        Matcher matcher = COMMAND_PATTERN.matcher(answer);
+        while (matcher.find()) {
+            commands.put(new JSONObject()
+                .put("command", matcher.group(1).trim())
+                .put("purpose", matcher.group(2) == null ? "" : matcher.group(2).trim())
+                .put("readOnly", readOnly));
+        }
+        boolean resolved = answer.contains("PROBLEM_RESOLVED: YES");
+        return new JSONObject().put("commands", commands).put("resolved", resolved)
+                               .put("resolution", resolved ? "Scripted resolution" : "");
+    }
+
+    // Same rough four characters per token the real tokenizers average on English text
+    private static int tokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private static String openAiResponse(String answer, boolean structured, int promptTokens, int completionTokens) {
+        JSONObject message = new JSONObject().put("role", "assistant");
+        if (structured) {
+            message.put("content", JSONObject.NULL).put("tool_calls", new JSONArray().put(new JSONObject()
+                .put("id", "call_mock").put("type", "function")
+                .put("function", new JSONObject().put("name", "submit_command_plan").put("arguments", answer))));
+        } else {
+            message.put("content", answer);
+        }
+        return new JSONObject()
+            .put("id", "chatcmpl-mock")
+            .put("object", "chat.completion")
+            .put("choices", new JSONArray().put(new JSONObject()
+                .put("index", 0).put("message", message).put("finish_reason", "stop")))
+            .put("usage", new JSONObject()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens))
+            .toString();
+    }
+
+    private static String geminiResponse(String answer, int promptTokens, int completionTokens) {
+        return new JSONObject()
+            .put("candidates", new JSONArray().put(new JSONObject()
+                .put("content", new JSONObject()
+                    .put("parts", new JSONArray().put(new JSONObject().put("text", answer)))
+                    .put("role", "model"))
+                .put("finishReason", "STOP")))
+            .put("usageMetadata", new JSONObject()
+                .put("promptTokenCount", promptTokens)
+                .put("candidatesTokenCount", completionTokens)
+                .put("totalTokenCount", promptTokens + completionTokens))
+            .toString();
+    }
+
+    private static String error(String message) {
+        return new JSONObject().put("error", new JSONObject().put("message", message)).toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of latency histograms.
+ * Instrumented classes look their histograms up once into static fields, so the hot path is a
+ * {@link System#nanoTime()} pair and a few atomic increments.
+ */
+public final class Metrics {
+    // Declared before the histograms below so it exists when they register
+    private static final Map<String, LatencyHistogram> REGISTRY = new ConcurrentHashMap<>();
+
+    public static final LatencyHistogram AI_QUERY =
+        histogram("ai_query", "Round trip of one AI query, including cache lookups");
+    public static final LatencyHistogram SAFETY_CHECK =
+        histogram("safety_check", "Classifying one command as dangerous or safe");
+    public static final LatencyHistogram PROCESS_SPAWN =
+        histogram("process_spawn", "Starting the child process of one command");
+    public static final LatencyHistogram COMMAND_RUN =
+        histogram("command_run", "Running one command from spawn until exit, including reading its output");
+    public static final LatencyHistogram OUTPUT_FORMAT =
+        histogram("output_format", "Truncating one command's output for display");
+    public static final LatencyHistogram DIAGNOSTIC_PHASE =
+        histogram("diagnostic_phase", "One diagnostic phase of a troubleshooting session");
+    public static final LatencyHistogram SOLUTION_PHASE =
+        histogram("solution_phase", "One solution phase of a troubleshooting session");
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The histogram with this name, created on first use
+     */
+    public static LatencyHistogram histogram(String name, String description) {
+        return REGISTRY.computeIfAbsent(name, n -> new LatencyHistogram(n, description));
+    }
+
+    /**
+     * @return All registered histograms, sorted by name
+     */
+    public static List<LatencyHistogram> histograms() {
+        List<LatencyHistogram> all = new ArrayList<>(REGISTRY.values());
+        all.sort(Comparator.comparing(LatencyHistogram::getName));
+        return all;
+    }
+}
@@ -0,0 +1,102 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import org.json.JSONObject;
+import util.AtomicFiles;
+
+/**
+ * Renders the registered histograms as a JSON summary or in the Prometheus text exposition format
+ */
+public final class MetricsExporter {
+    private static final String PROMETHEUS_PREFIX = "sysai_";
+
+    private MetricsExporter() {
+    }
+
+    /**
+     * @return One object per histogram with its count and millisecond latencies
+     */
+    public static JSONObject toJson(List<LatencyHistogram> histograms) {
+        JSONObject json = new JSONObject();
+        for (LatencyHistogram histogram : histograms) {
+            long count = histogram.getCount();
+            JSONObject summary = new JSONObject();
+            summary.put("count", count);
+            summary.put("total_ms", millis(histogram.getSumNanos()));
+            summary.put("mean_ms", count == 0 ? 0 : millis(histogram.getSumNanos() / count));
+            summary.put("p50_ms", millis(histogram.getPercentileNanos(0.50)));
+            summary.put("p90_ms", millis(histogram.getPercentileNanos(0.90)));
+            summary.put("p99_ms", millis(histogram.getPercentileNanos(0.99)));
+            summary.put("max_ms", millis(histogram.getMaxNanos()));
+            json.put(histogram.getName(), summary);
+        }
+        return json;
+    }
+
+    /**
+     * @return Histograms in seconds with cumulative le buckets, as read by the node exporter textfile collector
+     */
+    public static String toPrometheus(List<LatencyHistogram> histograms) {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : histograms) {
+            String metric = PROMETHEUS_PREFIX + histogram.getName() + "_seconds";
+            text.append("# HELP ").append(metric).append(' ').append(histogram.getDescription()).append('\n');
+            text.append("# TYPE ").append(metric).append(" histogram\n");
+
+            // _count is derived from the same bucket reads so it always matches the +Inf bucket
+            long cumulative = 0;
+            for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                long bucketCount = histogram.getBucketCount(i);
+                cumulative += bucketCount;
+                // Empty leading buckets add nothing but lines
+                if (cumulative == 0) {
+                    continue;
+                }
+                text.append(metric).append("_bucket{le=\"")
+                    .append(seconds(LatencyHistogram.bucketUpperBoundNanos(i))).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+            text.append(metric).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            text.append(metric).append("_sum ").append(seconds(histogram.getSumNanos())).append('\n');
+            text.append(metric).append("_count ").append(cumulative).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Write the JSON summary of all registered histograms
+     */
+    public static void writeJson(Path file) throws IOException {
+        AtomicFiles.writeString(file, toJson(Metrics.histograms()).toString(2) + "\n");
+    }
+
+    /**
+     * Write all registered histograms in the Prometheus text format
+     */
+    public static void writePrometheus(Path file) throws IOException {
+        String text = toPrometheus(Metrics.histograms());
+        // The textfile collector may read at any moment, so never let it see a half-written file
+        AtomicFiles.write(file, temp -> {
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            try {
+                // Temp files are private to their owner, but the node exporter usually runs as another user
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-r--r--"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system; its default permissions apply
+            }
+        });
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,136 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import util.AtomicFiles;
+
+/**
+ * Records a timeline of spans in the Chrome trace event format, viewable in Perfetto or chrome://tracing.
+ * Disabled by default; once enabled, spans are buffered in memory and written in one go by {@link #write}.
+ * Callers that build span arguments should check {@link #isEnabled()} first so tracing costs nothing when off.
+ */
+public final class Tracer {
+    // Keeps a long-running daemon from growing without bound; later spans are counted and dropped
+    static final int MAX_SPANS = 1_000_000;
+
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final Queue<Span> SPANS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SIZE = new AtomicInteger();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final Map<Long, String> THREAD_NAMES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+
+    private static final class Span {
+        final String name;
+        final String category;
+        final long startNanos;
+        final long durationNanos;
+        final long threadId;
+        final Object[] args;
+
+        Span(String name, String category, long startNanos, long durationNanos, long threadId, Object[] args) {
+            this.name = name;
+            this.category = category;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.threadId = threadId;
+            this.args = args;
+        }
+    }
+
+    private Tracer() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a span that started at startNanos and ends now
+     * @param name Span name shown on the timeline
+     * @param category Span category, used for filtering in the viewer
+     * @param startNanos Value of System.nanoTime() when the span began
+     * @param args Alternating argument names and values shown when the span is selected
+     */
+    public static void span(String name, String category, long startNanos, Object... args) {
+        if (!enabled) {
+            return;
+        }
+        long end = System.nanoTime();
+        if (SIZE.incrementAndGet() > MAX_SPANS) {
+            SIZE.decrementAndGet();
+            DROPPED.increment();
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        THREAD_NAMES.putIfAbsent(thread.getId(), thread.getName());
+        SPANS.add(new Span(name, category, startNanos, end - startNanos, thread.getId(), args));
+    }
+
+    /**
+     * Render every buffered span as a trace document
+     */
+    static JSONObject toJson() {
+        JSONArray events = new JSONArray();
+        for (Map.Entry<Long, String> thread : THREAD_NAMES.entrySet()) {
+            events.put(new JSONObject()
+                .put("name", "thread_name").put("ph", "M").put("pid", 1).put("tid", thread.getKey())
+                .put("args", new JSONObject().put("name", thread.getValue())));
+        }
+        for (Span span : SPANS) {
+            JSONObject event = new JSONObject()
+                .put("name", span.name)
+                .put("cat", span.category)
+                .put("ph", "X")
+                .put("ts", micros(span.startNanos - ORIGIN_NANOS))
+                .put("dur", micros(span.durationNanos))
+                .put("pid", 1)
+                .put("tid", span.threadId);
+            if (span.args.length > 0) {
+                JSONObject args = new JSONObject();
+                for (int i = 0; i + 1 < span.args.length; i += 2) {
+                    args.put(String.valueOf(span.args[i]), span.args[i + 1] == null ? JSONObject.NULL : span.args[i + 1]);
+                }
+                event.put("args", args);
+            }
+            events.put(event);
+        }
+
+        JSONObject trace = new JSONObject().put("traceEvents", events).put("displayTimeUnit", "ms");
+        if (DROPPED.sum() > 0) {
+            trace.put("otherData", new JSONObject().put("droppedSpans", DROPPED.sum()));
+        }
+        return trace;
+    }
+
+    /**
+     * Write all buffered spans to a trace file
+     */
+    public static void write(Path file) throws IOException {
+        AtomicFiles.writeString(file, toJson().toString());
+    }
+
+    static void reset() {
+        SPANS.clear();
+        SIZE.set(0);
+        DROPPED.reset();
+        THREAD_NAMES.clear();
+        enabled = false;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
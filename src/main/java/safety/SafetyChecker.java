@@ -7,6 +7,8 @@ import java.util.regex.Matcher;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import metrics.Metrics;
+import metrics.Tracer;
 
 public class SafetyChecker {
     // List of dangerous command patterns
@@ -17,61 +19,73 @@ public class SafetyChecker {
         "wget", "curl", ";", "&&", "||", "|", "format", "fdisk", "mkswap"
     };
     
-    // Regex patterns for more complex matching
-    private static final Pattern[] DANGEROUS_PATTERNS = {
-        // Disk operations
-        Pattern.compile("dd\\s+\\w*.*\\s+of=/dev/sd[a-z][0-9]*"),
-        Pattern.compile("mkfs\\.\\w+\\s+/dev/\\w+"),
-        Pattern.compile("fdisk\\s+/dev/\\w+"),
-        
-        // Recursive deletion
-        Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/"),
-        Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/etc"),
-        Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/var"),
-        Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/usr"),
-        Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/boot"),
-        Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/bin"),
-        
-        // Privilege escalation
-        Pattern.compile("sudo\\s+.*"),
-        Pattern.compile("su\\s+(-)?\\w*"),
-        Pattern.compile("pkexec\\s+.*"),
-        
-        // System file modifications
-        Pattern.compile("chmod\\s+([0-7]{3}|[+-][rwx])\\s+/\\w*"),
-        Pattern.compile("chown\\s+.*\\s+/\\w*"),
-        Pattern.compile("mv\\s+.*/\\s+/"),
-        
-        // Network exposure
-        Pattern.compile("nc\\s+-l\\s+\\d+"),
-        Pattern.compile("netcat\\s+-l\\s+\\d+"),
-        
-        // Downloading and executing
-        Pattern.compile("(wget|curl)\\s+.*(\\|\\s*(bash|sh|zsh|csh|python|perl|php))"),
-        
-        // Dangerous package operations
-        Pattern.compile("apt(-get)?\\s+(remove|purge)\\s+\\w+"),
-        Pattern.compile("yum\\s+remove\\s+\\w+"),
-        
-        // Kernel module operations
-        Pattern.compile("rmmod\\s+\\w+"),
-        Pattern.compile("insmod\\s+\\w+"),
-        
-        // User management
-        Pattern.compile("userdel\\s+\\w+"),
-        Pattern.compile("deluser\\s+\\w+"),
-        
-        // Firewall modifications
-        Pattern.compile("iptables\\s+-F"),
-        Pattern.compile("ufw\\s+disable")
-    };
-    
     // System directories that should be protected
     private static final String[] SYSTEM_DIRECTORIES = {
         "/bin", "/sbin", "/usr/bin", "/usr/sbin", "/etc", "/var", "/boot", 
         "/lib", "/lib64", "/usr/lib", "/usr/lib64", "/dev", "/proc", "/sys"
     };
     
+    // Regex matchers are compiled on first use rather than at class load, so start-up paths
+    // that never check a command (help, config, daemon client) don't pay for them
+    private static final class Patterns {
+        // Regex patterns for more complex matching
+        static final Pattern[] DANGEROUS_PATTERNS = {
+            // Disk operations
+            Pattern.compile("dd\\s+\\w*.*\\s+of=/dev/sd[a-z][0-9]*"),
+            Pattern.compile("mkfs\\.\\w+\\s+/dev/\\w+"),
+            Pattern.compile("fdisk\\s+/dev/\\w+"),
+        
+            // Recursive deletion
+            Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/"),
+            Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/etc"),
+            Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/var"),
+            Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/usr"),
+            Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/boot"),
+            Pattern.compile("rm\\s+(-[a-zA-Z]*[rf][a-zA-Z]*\\s+)*/bin"),
+        
+            // Privilege escalation
+            Pattern.compile("sudo\\s+.*"),
+            Pattern.compile("su\\s+(-)?\\w*"),
+            Pattern.compile("pkexec\\s+.*"),
+        
+            // System file modifications
+            Pattern.compile("chmod\\s+([0-7]{3}|[+-][rwx])\\s+/\\w*"),
+            Pattern.compile("chown\\s+.*\\s+/\\w*"),
+            Pattern.compile("mv\\s+.*/\\s+/"),
+        
+            // Network exposure
+            Pattern.compile("nc\\s+-l\\s+\\d+"),
+            Pattern.compile("netcat\\s+-l\\s+\\d+"),
+        
+            // Downloading and executing
+            Pattern.compile("(wget|curl)\\s+.*(\\|\\s*(bash|sh|zsh|csh|python|perl|php))"),
+        
+            // Dangerous package operations
+            Pattern.compile("apt(-get)?\\s+(remove|purge)\\s+\\w+"),
+            Pattern.compile("yum\\s+remove\\s+\\w+"),
+        
+            // Kernel module operations
+            Pattern.compile("rmmod\\s+\\w+"),
+            Pattern.compile("insmod\\s+\\w+"),
+        
+            // User management
+            Pattern.compile("userdel\\s+\\w+"),
+            Pattern.compile("deluser\\s+\\w+"),
+        
+            // Firewall modifications
+            Pattern.compile("iptables\\s+-F"),
+            Pattern.compile("ufw\\s+disable")
+        };
+        
+        // Matches "mv/cp ... <dir>" for each protected system directory, in SYSTEM_DIRECTORIES order
+        static final Pattern[] COPY_OR_MOVE_INTO_SYSTEM_DIR = new Pattern[SYSTEM_DIRECTORIES.length];
+        static {
+            for (int i = 0; i < SYSTEM_DIRECTORIES.length; i++) {
+                COPY_OR_MOVE_INTO_SYSTEM_DIR[i] = Pattern.compile(".*(mv|cp)\\s+.*\\s+" + SYSTEM_DIRECTORIES[i] + ".*");
+            }
+        }
+    }
+    
     /**
      * Check if a command is potentially dangerous
      * @param command The command to check
@@ -81,7 +95,16 @@ public class SafetyChecker {
         if (command == null || command.trim().isEmpty()) {
             return false;
         }
-        
+        long start = System.nanoTime();
+        boolean dangerous = classify(command);
+        Metrics.SAFETY_CHECK.recordSince(start);
+        if (Tracer.isEnabled()) {
+            Tracer.span("safety_check", "safety", start, "command", command, "dangerous", dangerous);
+        }
+        return dangerous;
+    }
+
+    private static boolean classify(String command) {
         String lower = command.toLowerCase().trim();
         
         // Check for dangerous keywords
@@ -92,7 +115,7 @@ public class SafetyChecker {
         }
         
         // Check regex patterns
-        for (Pattern pattern : DANGEROUS_PATTERNS) {
+        for (Pattern pattern : Patterns.DANGEROUS_PATTERNS) {
             if (pattern.matcher(command).find()) {
                 return true;
             }
@@ -118,11 +141,12 @@ public class SafetyChecker {
         String lower = command.toLowerCase();
         
         // Check for command patterns that involve writing to system directories
-        for (String dir : SYSTEM_DIRECTORIES) {
+        for (int i = 0; i < SYSTEM_DIRECTORIES.length; i++) {
+            String dir = SYSTEM_DIRECTORIES[i];
             if ((lower.contains("> " + dir) || lower.contains(">>" + dir) || 
                  lower.contains("touch " + dir) || 
                  (lower.contains("echo") && lower.contains(dir))) || 
-                (lower.matches(".*(mv|cp)\\s+.*\\s+" + dir + ".*"))) {
+                Patterns.COPY_OR_MOVE_INTO_SYSTEM_DIR[i].matcher(lower).matches()) {
                 return true;
             }
         }
@@ -157,7 +181,8 @@ public class SafetyChecker {
      * @return A string explaining why the command is dangerous, or null if it's not dangerous
      */
     public static String getDangerReason(String command) {
-        if (!isDangerous(command)) {
+        // Callers have usually checked the command already; don't count it in the metrics twice
+        if (command == null || command.trim().isEmpty() || !classify(command)) {
             return null;
         }
         
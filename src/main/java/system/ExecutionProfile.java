@@ -0,0 +1,188 @@
+package system;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How much of the host a command may use.
+ * Read-only diagnostics run at the lowest CPU and I/O priority with caps on data memory, CPU time and
+ * open files, so a "find /" or "du -sh /*" during an incident doesn't compete with the workload being
+ * rescued, and are killed once their output reaches the cap. Commands that change the system only get an
+ * output cap past which their output is discarded while they run to completion: a resource limit could kill
+ * them half-way, and priorities and limits would be inherited by any daemon they start.
+ * The caps are applied with nice, ionice and prlimit where those tools exist, and skipped otherwise.
+ */
+public enum ExecutionProfile {
+    // Data memory rather than address space is capped: the JVM behind jcmd, jstack or jstat reserves its
+    // maximum heap up front, which an address space cap refuses on any host with lots of RAM
+    DIAGNOSTIC(19, 7, 4L << 30, 60, 256, 4 << 20, true),
+    CHANGE(0, -1, 0, 0, 0, 16 << 20, false),
+    UNRESTRICTED(0, -1, 0, 0, 0, 0, false);
+
+    // Exit code of a process killed by SIGXCPU after using up its CPU time limit
+    private static final int SIGXCPU_EXIT_CODE = 128 + 24;
+
+    private final int niceness;
+    private final int ioPriority;
+    private final long maxDataBytes;
+    private final long maxCpuSeconds;
+    private final long maxOpenFiles;
+    private final int maxOutputBytes;
+    private final boolean stopAtOutputCap;
+
+    /**
+     * @param niceness CPU nice value, 0 to leave it unchanged
+     * @param ioPriority Best-effort I/O priority from 0 (highest) to 7, or -1 to leave it unchanged
+     * @param maxDataBytes Cap on heap and other private writable memory, 0 for none
+     * @param maxCpuSeconds CPU time cap, 0 for none
+     * @param maxOpenFiles Open file cap, 0 for none
+     * @param maxOutputBytes Output kept from the command, 0 for no cap
+     * @param stopAtOutputCap Whether the command is killed at the output cap rather than left to finish
+     */
+    ExecutionProfile(int niceness, int ioPriority, long maxDataBytes, long maxCpuSeconds, long maxOpenFiles,
+                     int maxOutputBytes, boolean stopAtOutputCap) {
+        this.niceness = niceness;
+        this.ioPriority = ioPriority;
+        this.maxDataBytes = maxDataBytes;
+        this.maxCpuSeconds = maxCpuSeconds;
+        this.maxOpenFiles = maxOpenFiles;
+        this.maxOutputBytes = maxOutputBytes;
+        this.stopAtOutputCap = stopAtOutputCap;
+    }
+
+    /**
+     * Choose the profile from the safety classification of a command
+     * @param readOnly Whether the command is meant to only read system state, i.e. a diagnostic
+     *                 the AI didn't mark as modifying
+     * @param dangerous The safety checker's verdict the caller already has, so it isn't checked twice
+     */
+    public static ExecutionProfile forCommand(boolean readOnly, boolean dangerous) {
+        return readOnly && !dangerous ? DIAGNOSTIC : CHANGE;
+    }
+
+    /**
+     * @return Bytes of output kept from the command, 0 for no cap
+     */
+    public int getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    /**
+     * @return Whether a command reaching the output cap is killed; otherwise the rest of its output is
+     *         discarded until it exits
+     */
+    public boolean isStoppedAtOutputCap() {
+        return stopAtOutputCap;
+    }
+
+    public long getMaxCpuSeconds() {
+        return maxCpuSeconds;
+    }
+
+    /**
+     * @return The command line prefixed with the nice, ionice and prlimit invocations this profile needs
+     */
+    List<String> wrap(List<String> command) {
+        Tools tools = Tools.INSTANCE;
+        List<String> wrapped = new ArrayList<>();
+        if (niceness > 0 && tools.nice != null) {
+            wrapped.add(tools.nice);
+            wrapped.add("-n");
+            wrapped.add(String.valueOf(niceness));
+        }
+        if (ioPriority >= 0 && tools.ionice != null) {
+            // -t: run the command even where the I/O scheduler can't be changed
+            wrapped.add(tools.ionice);
+            wrapped.add("-t");
+            wrapped.add("-c");
+            wrapped.add("2");
+            wrapped.add("-n");
+            wrapped.add(String.valueOf(ioPriority));
+        }
+        List<String> limits = new ArrayList<>();
+        limit(limits, "--data", maxDataBytes, tools.maxDataBytes);
+        limit(limits, "--cpu", maxCpuSeconds, tools.maxCpuSeconds);
+        limit(limits, "--nofile", maxOpenFiles, tools.maxOpenFiles);
+        if (!limits.isEmpty() && tools.prlimit != null) {
+            wrapped.add(tools.prlimit);
+            wrapped.addAll(limits);
+            wrapped.add("--");
+        }
+        if (wrapped.isEmpty()) {
+            return command;
+        }
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    // Lowering a hard limit is always allowed, raising it is not, so never ask for more than we already have
+    private static void limit(List<String> limits, String option, long cap, long current) {
+        if (cap > 0) {
+            limits.add(option + "=" + (current > 0 ? Math.min(cap, current) : cap));
+        }
+    }
+
+    /**
+     * @return A note explaining an exit code caused by this profile's limits, or an empty string
+     */
+    String describeExit(int exitCode) {
+        if (exitCode == SIGXCPU_EXIT_CODE && maxCpuSeconds > 0) {
+            return " (CPU time limit of " + maxCpuSeconds + " s reached)";
+        }
+        return "";
+    }
+
+    /**
+     * Locations of the wrapper tools and the hard limits this process already runs under, looked up once
+     */
+    private static final class Tools {
+        static final Tools INSTANCE = new Tools();
+
+        final String nice;
+        final String ionice;
+        final String prlimit;
+        final long maxDataBytes;
+        final long maxCpuSeconds;
+        final long maxOpenFiles;
+
+        private Tools() {
+            boolean linux = System.getProperty("os.name").toLowerCase().contains("linux");
+            nice = linux ? PathIndex.getDefault().resolve("nice") : null;
+            ionice = linux ? PathIndex.getDefault().resolve("ionice") : null;
+            prlimit = linux ? PathIndex.getDefault().resolve("prlimit") : null;
+
+            long data = 0;
+            long cpu = 0;
+            long openFiles = 0;
+            try {
+                // "Max open files            1024                 4096                 files"
+                for (String line : Files.readAllLines(Path.of("/proc/self/limits"), StandardCharsets.UTF_8)) {
+                    if (line.startsWith("Max data size")) data = hardLimit(line);
+                    else if (line.startsWith("Max cpu time")) cpu = hardLimit(line);
+                    else if (line.startsWith("Max open files")) openFiles = hardLimit(line);
+                }
+            } catch (IOException | SecurityException e) {
+                // Not Linux; prlimit is not used either
+            }
+            maxDataBytes = data;
+            maxCpuSeconds = cpu;
+            maxOpenFiles = openFiles;
+        }
+
+        /**
+         * @return The hard limit of a /proc/self/limits line, or 0 if it is unlimited
+         */
+        private static long hardLimit(String line) {
+            String[] fields = line.substring(25).trim().split("\\s+");
+            try {
+                return fields.length < 2 ? 0 : Long.parseLong(fields[1]);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package system;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+import util.AtomicFiles;
+
+/**
+ * Basic facts about the host (distribution, kernel, init system, package manager, CPU, memory),
+ * read in-process from /etc/os-release, /proc and /sys so the AI doesn't spend a diagnostic round on them.
+ * The facts are cached in ~/.sysai/host.json and collected again only when the boot id or the kernel
+ * release changes, so a query costs two small /proc reads instead of a full scan.
+ */
+public final class HostFingerprint {
+    private static final int CACHE_VERSION = 1;
+    private static final String[] PACKAGE_MANAGERS = {"apt-get", "dnf", "yum", "zypper", "pacman", "apk", "emerge", "nix-env"};
+    private static final String[] BIN_DIRECTORIES = {"usr/bin", "bin", "usr/sbin", "sbin"};
+
+    private static volatile String current;
+
+    private final Path root;
+    private final Path cacheFile;
+
+    /**
+     * @param root File system root the facts are read from, "/" outside of tests
+     * @param cacheFile Where collected facts are kept between runs
+     */
+    HostFingerprint(Path root, Path cacheFile) {
+        this.root = root;
+        this.cacheFile = cacheFile;
+    }
+
+    public static Path defaultCacheFile() {
+        return Path.of(System.getProperty("user.home"), ".sysai", "host.json");
+    }
+
+    /**
+     * @return Facts about this host, one per line, or an empty string where /proc is not available
+     */
+    public static String describe() {
+        String facts = current;
+        if (facts == null) {
+            facts = new HostFingerprint(Path.of("/"), defaultCacheFile()).load();
+            current = facts;
+        }
+        return facts;
+    }
+
+    /**
+     * @return The cached facts if they still describe this boot and kernel, otherwise freshly collected ones
+     */
+    String load() {
+        String bootId = read("proc/sys/kernel/random/boot_id");
+        String kernel = read("proc/sys/kernel/osrelease");
+        if (bootId == null || kernel == null) {
+            return "";
+        }
+
+        try {
+            JSONObject cached = new JSONObject(Files.readString(cacheFile, StandardCharsets.UTF_8));
+            if (cached.optInt("version") == CACHE_VERSION && bootId.equals(cached.optString("boot_id")) &&
+                kernel.equals(cached.optString("kernel"))) {
+                return cached.getString("facts");
+            }
+        } catch (IOException | JSONException e) {
+            // No usable cache yet; collect below
+        }
+
+        String facts = collect(kernel);
+        JSONObject cache = new JSONObject()
+            .put("version", CACHE_VERSION)
+            .put("boot_id", bootId)
+            .put("kernel", kernel)
+            .put("facts", facts);
+        try {
+            AtomicFiles.writeString(cacheFile, cache.toString(2) + "\n");
+        } catch (IOException e) {
+            // The cache only saves time; the facts are still valid for this run
+        }
+        return facts;
+    }
+
+    String collect(String kernel) {
+        List<String> facts = new ArrayList<>();
+        add(facts, "Distribution", distribution());
+        add(facts, "Kernel", kernel + " (" + System.getProperty("os.arch") + ")");
+        add(facts, "Init system", read("proc/1/comm"));
+        add(facts, "Package manager", packageManagers());
+        add(facts, "Container", container());
+        add(facts, "Hardware", hardware());
+        add(facts, "CPU", cpu());
+        add(facts, "Memory", memory());
+        add(facts, "Cgroups", Files.exists(root.resolve("sys/fs/cgroup/cgroup.controllers")) ? "v2" : null);
+        String enforce = read("sys/fs/selinux/enforce");
+        add(facts, "SELinux", enforce == null ? null : "1".equals(enforce) ? "enforcing" : "permissive");
+
+        StringBuilder description = new StringBuilder("Host facts (already collected, no need to check them again):");
+        for (String fact : facts) {
+            description.append("\n- ").append(fact);
+        }
+        return description.toString();
+    }
+
+    private String distribution() {
+        String prettyName = null;
+        String name = null;
+        String version = null;
+        for (String line : lines("etc/os-release")) {
+            int equals = line.indexOf('=');
+            if (equals < 0) continue;
+            String value = unquote(line.substring(equals + 1).trim());
+            switch (line.substring(0, equals).trim()) {
+                case "PRETTY_NAME": prettyName = value; break;
+                case "NAME": name = value; break;
+                case "VERSION_ID": version = value; break;
+                default: break;
+            }
+        }
+        if (prettyName != null) return prettyName;
+        if (name == null) return null;
+        return version == null ? name : name + " " + version;
+    }
+
+    private String packageManagers() {
+        List<String> found = new ArrayList<>();
+        for (String manager : PACKAGE_MANAGERS) {
+            for (String directory : BIN_DIRECTORIES) {
+                if (Files.isExecutable(root.resolve(directory).resolve(manager))) {
+                    found.add(manager);
+                    break;
+                }
+            }
+        }
+        return found.isEmpty() ? null : String.join(", ", found);
+    }
+
+    private String container() {
+        String systemd = read("run/systemd/container");
+        if (systemd != null) return systemd;
+        if (Files.exists(root.resolve(".dockerenv"))) return "docker";
+        if (Files.exists(root.resolve("run/.containerenv"))) return "podman";
+        return null;
+    }
+
+    private String hardware() {
+        String vendor = read("sys/class/dmi/id/sys_vendor");
+        String product = read("sys/class/dmi/id/product_name");
+        if (vendor == null) return product;
+        return product == null ? vendor : vendor + " " + product;
+    }
+
+    private String cpu() {
+        String model = null;
+        int processors = 0;
+        for (String line : lines("proc/cpuinfo")) {
+            if (line.startsWith("processor")) {
+                processors++;
+            } else if (model == null && line.startsWith("model name")) {
+                model = line.substring(line.indexOf(':') + 1).trim();
+            }
+        }
+        if (processors == 0) processors = Runtime.getRuntime().availableProcessors();
+        return (model == null ? "" : model + ", ") + processors + (processors == 1 ? " core" : " cores");
+    }
+
+    private String memory() {
+        String total = null;
+        String swap = null;
+        for (String line : lines("proc/meminfo")) {
+            if (line.startsWith("MemTotal:")) total = gibibytes(line);
+            else if (line.startsWith("SwapTotal:")) swap = gibibytes(line);
+        }
+        if (total == null) return null;
+        return swap == null ? total + " RAM" : total + " RAM, " + swap + " swap";
+    }
+
+    // "MemTotal:       16314916 kB" -> "15.6 GiB"
+    private static String gibibytes(String meminfoLine) {
+        String[] fields = meminfoLine.trim().split("\\s+");
+        try {
+            return String.format("%.1f GiB", Long.parseLong(fields[1]) / (1024.0 * 1024.0));
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void add(List<String> facts, String label, String value) {
+        if (value != null && !value.isEmpty()) {
+            facts.add(label + ": " + value);
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'') &&
+            value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * @return The trimmed contents of a small file under the root, or null if it can't be read
+     */
+    private String read(String relativePath) {
+        try {
+            String value = Files.readString(root.resolve(relativePath), StandardCharsets.UTF_8).trim();
+            return value.isEmpty() ? null : value;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private List<String> lines(String relativePath) {
+        try {
+            return Files.readAllLines(root.resolve(relativePath), StandardCharsets.UTF_8);
+        } catch (IOException | SecurityException e) {
+            return List.of();
+        }
+    }
+}
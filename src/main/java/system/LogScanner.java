@@ -0,0 +1,406 @@
+package system;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import metrics.Tracer;
+
+/**
+ * In-process replacement for dumping a whole log file into the prompt.
+ * Memory-maps the file in fixed-size windows and walks it from the end backwards, keeping only lines
+ * that contain a severity keyword or a term from the user's query. The scan stops at the first line
+ * older than the time window, after {@link #MAX_MATCHES} matches or after {@link #MAX_SCAN_BYTES},
+ * so a multi-GB log costs a bounded amount of time and heap. Instances are not thread-safe.
+ */
+public final class LogScanner {
+    static final int MAX_MATCHES = 100;
+    static final int MAX_LINE_CHARS = 240;
+    static final long MAX_SCAN_BYTES = 1L << 30;
+    static final Duration DEFAULT_WINDOW = Duration.ofHours(24);
+    // Smaller logs are cheap enough to hand over whole
+    static final long MIN_FILE_BYTES = 64 * 1024;
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+    // Lines longer than this are cut to their last CHUNK_BYTES
+    private static final int CHUNK_BYTES = 1024 * 1024;
+    private static final LatencyHistogram LOG_SCAN =
+        Metrics.histogram("log_scan", "Scanning one log file in-process instead of dumping it");
+
+    private static final String[] SEVERITY_KEYWORDS = {
+        "error", "fail", "fatal", "crit", "panic", "emerg", "alert", "warn", "denied", "refused",
+        "timeout", "timed out", "segfault", "out of memory", "oom-kill", "oom_kill", "killed", "exception"
+    };
+    private static final Set<String> STOP_WORDS = Set.of(
+        "about", "after", "again", "also", "been", "does", "doesn't", "from", "have", "help", "into",
+        "keeps", "just", "like", "make", "more", "need", "should", "some", "than", "that", "them", "then",
+        "there", "they", "this", "what", "when", "where", "which", "while", "why", "will", "with", "would",
+        "working", "work", "works", "problem", "issue", "system");
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+    private static final Set<String> VIEWERS = Set.of("cat", "less", "more");
+    private static final String[] COMPRESSED_SUFFIXES = {".gz", ".xz", ".bz2", ".zst", ".lz4"};
+
+    private final List<String> terms;
+    private final byte[][][] patternsByFirstByte = new byte[256][][];
+    private final boolean[] startsPattern = new boolean[256 * 256];
+    private final byte[] chunk = new byte[CHUNK_BYTES];
+    private final long cutoffEpochSecond;
+    // The cutoff in local time, as the stop reason reports it
+    private final String cutoff;
+    // Log timestamps are local time; the offset in effect now is close enough for a window of hours
+    private final int utcOffsetSeconds;
+    private final int currentYear;
+    private final long today;
+
+    /**
+     * @param terms Lower-case words of at least two characters that make a line relevant in addition to
+     *              the severity keywords
+     * @param since Lines with an older timestamp end the scan; lines without a timestamp are kept scanning
+     */
+    public LogScanner(List<String> terms, Instant since) {
+        this.terms = terms;
+        this.cutoffEpochSecond = since.getEpochSecond();
+        ZoneId zone = ZoneId.systemDefault();
+        this.cutoff = LocalDateTime.ofInstant(since, zone).truncatedTo(ChronoUnit.SECONDS)
+            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        this.utcOffsetSeconds = zone.getRules().getOffset(Instant.now()).getTotalSeconds();
+        LocalDate now = LocalDate.now(zone);
+        this.currentYear = now.getYear();
+        this.today = now.toEpochDay();
+        List<byte[]> all = new ArrayList<>();
+        for (String keyword : SEVERITY_KEYWORDS) {
+            all.add(keyword.getBytes(StandardCharsets.US_ASCII));
+        }
+        for (String term : terms) {
+            if (term.length() >= 2) {
+                all.add(term.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for (byte[] pattern : all) {
+            int first = pattern[0] & 0xFF;
+            byte[][] group = patternsByFirstByte[first];
+            group = group == null ? new byte[1][] : Arrays.copyOf(group, group.length + 1);
+            group[group.length - 1] = pattern;
+            patternsByFirstByte[first] = group;
+            startsPattern[(first << 8) | (pattern[1] & 0xFF)] = true;
+        }
+    }
+
+    /**
+     * A scanner for the last {@link #DEFAULT_WINDOW} that also keeps lines naming terms from the query
+     */
+    public static LogScanner forQuery(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{Alnum}._-]+")) {
+            word = word.replaceAll("^[._-]+|[._-]+$", "");
+            if (word.length() >= 4 && !STOP_WORDS.contains(word)) {
+                terms.add(word);
+            }
+        }
+        return new LogScanner(new ArrayList<>(terms), Instant.now().minus(DEFAULT_WINDOW));
+    }
+
+    /**
+     * @return The log file a plain {@code cat}, {@code less} or {@code more} command would dump whole,
+     *         or null if the command should run as usual
+     */
+    public static Path logFileOf(String command) {
+        // Anything the shell would interpret has to go through the shell
+        if (command.matches(".*[|<>;&$`*?].*")) {
+            return null;
+        }
+        List<String> tokens = SystemExecutor.parseCommand(command);
+        if (tokens.size() != 2 || !VIEWERS.contains(tokens.get(0))) {
+            return null;
+        }
+        Path file = Path.of(tokens.get(1));
+        String name = file.getFileName() == null ? "" : file.getFileName().toString();
+        for (String suffix : COMPRESSED_SUFFIXES) {
+            if (name.endsWith(suffix)) return null;
+        }
+        if (!file.toAbsolutePath().startsWith("/var/log") && !name.contains(".log")) {
+            return null;
+        }
+        try {
+            return Files.isRegularFile(file) && Files.isReadable(file) && Files.size(file) >= MIN_FILE_BYTES ? file : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return A header line followed by the relevant lines, oldest first, each with its line number
+     */
+    public String scan(Path file) throws IOException {
+        long start = System.nanoTime();
+        Scan scan = new Scan();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            scan.size = size;
+            long end = size;
+            if (size > 0 && byteAt(channel, size - 1) == '\n') {
+                end--;
+            }
+            MappedByteBuffer window = null;
+            long windowStart = end;
+            // Set when the line being scanned was longer than a chunk and its tail was already taken
+            boolean continuation = false;
+            while (end > 0 && !scan.done) {
+                long chunkStart = Math.max(0, end - CHUNK_BYTES);
+                if (chunkStart < windowStart) {
+                    windowStart = Math.max(0, end - WINDOW_BYTES);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, end - windowStart);
+                }
+                // Bulk-copy a chunk out of the mapping: scanning a heap array is several times faster
+                // than reading the mapping byte by byte
+                int length = (int) (end - chunkStart);
+                window.get((int) (chunkStart - windowStart), chunk, 0, length);
+                int lineEnd = length;
+                for (int i = length - 1; i >= 0 && !scan.done; i--) {
+                    if (chunk[i] == '\n') {
+                        if (continuation) {
+                            continuation = false;
+                        } else {
+                            line(scan, i + 1, lineEnd);
+                        }
+                        lineEnd = i;
+                    }
+                }
+                if (scan.done) {
+                    break;
+                }
+                if (lineEnd == length && chunkStart > 0) {
+                    // A single line longer than a chunk: keep its tail and skip the rest of it
+                    if (!continuation) {
+                        line(scan, 0, lineEnd);
+                        continuation = true;
+                    }
+                    end = chunkStart;
+                } else if (chunkStart == 0) {
+                    if (!continuation) {
+                        line(scan, 0, lineEnd);
+                    }
+                    end = 0;
+                } else {
+                    // The first line in this chunk started in the previous one; rescan it from there
+                    end = chunkStart + lineEnd;
+                }
+                scan.scannedBytes = size - end;
+                if (scan.scannedBytes >= MAX_SCAN_BYTES) {
+                    scan.done = true;
+                    scan.stopReason = "scan limit of " + (MAX_SCAN_BYTES >> 20) + " MB reached";
+                }
+            }
+            scan.reachedStart = end <= 0 && scan.stopReason == null;
+        }
+        LOG_SCAN.recordSince(start);
+        if (Tracer.isEnabled()) {
+            Tracer.span("log_scan", "exec", start, "file", file.toString(), "lines", scan.lines, "matches", scan.matches.size());
+        }
+        return render(file, scan);
+    }
+
+    private static final class Scan {
+        final List<String> matches = new ArrayList<>();
+        final List<Long> lineNumbers = new ArrayList<>();
+        long size;
+        long lines;
+        long scannedBytes;
+        boolean done;
+        boolean reachedStart;
+        String stopReason;
+    }
+
+    private void line(Scan scan, int start, int end) {
+        scan.lines++;
+        long timestamp = timestamp(chunk, start, end);
+        if (timestamp != Long.MIN_VALUE && timestamp < cutoffEpochSecond) {
+            scan.done = true;
+            scan.stopReason = "reached lines older than " + cutoff;
+            return;
+        }
+        if (!matches(chunk, start, end)) {
+            return;
+        }
+        String text = new String(chunk, start, Math.min(end - start, MAX_LINE_CHARS * 4), StandardCharsets.UTF_8);
+        if (text.length() > MAX_LINE_CHARS || MAX_LINE_CHARS * 4 < end - start) {
+            text = text.substring(0, Math.min(text.length(), MAX_LINE_CHARS)) + "...";
+        }
+        scan.matches.add(text);
+        scan.lineNumbers.add(scan.lines);
+        if (scan.matches.size() >= MAX_MATCHES) {
+            scan.done = true;
+            scan.stopReason = MAX_MATCHES + " matches found";
+        }
+    }
+
+    private boolean matches(byte[] line, int start, int end) {
+        if (end - start < 2) {
+            return false;
+        }
+        // Most letters start some keyword, but few of their two-letter pairs do; only those get compared
+        int current = lower(line[start]);
+        for (int i = start; i < end - 1; i++) {
+            int next = lower(line[i + 1]);
+            if (startsPattern[(current << 8) | next]) {
+                for (byte[] pattern : patternsByFirstByte[current]) {
+                    if (regionMatches(line, i, end, pattern)) {
+                        return true;
+                    }
+                }
+            }
+            current = next;
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(byte[] line, int offset, int end, byte[] pattern) {
+        if (end - offset < pattern.length) {
+            return false;
+        }
+        for (int j = 1; j < pattern.length; j++) {
+            if (lower(line[offset + j]) != (pattern[j] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (b | 0x20) : (b & 0xFF);
+    }
+
+    /**
+     * @return Epoch second of an ISO-8601 ("2024-05-01T12:00:00") or syslog ("May  1 12:00:00") prefix,
+     *         read as local time, or Long.MIN_VALUE if the line has neither
+     */
+    private long timestamp(byte[] line, int start, int end) {
+        try {
+            if (end - start >= 19 && line[start + 4] == '-' && line[start + 7] == '-' &&
+                line[start + 13] == ':' && line[start + 16] == ':') {
+                long day = epochDay(digits(line, start, 4), digits(line, start + 5, 2), digits(line, start + 8, 2));
+                return localSeconds(day, line, start + 11);
+            }
+            if (end - start >= 15 && line[start + 3] == ' ' && line[start + 9] == ':' && line[start + 12] == ':') {
+                int month = month(line, start);
+                if (month == 0) {
+                    return Long.MIN_VALUE;
+                }
+                int dayOfMonth = line[start + 4] == ' ' ? digits(line, start + 5, 1) : digits(line, start + 4, 2);
+                // Syslog omits the year; a date ahead of today belongs to last year
+                long day = epochDay(currentYear, month, dayOfMonth);
+                if (day > today) {
+                    day = epochDay(currentYear - 1, month, dayOfMonth);
+                }
+                return localSeconds(day, line, start + 7);
+            }
+        } catch (NumberFormatException e) {
+            // Looked like a timestamp but isn't one
+        }
+        return Long.MIN_VALUE;
+    }
+
+    // Called once per line, so plain arithmetic instead of java.time objects; "HH:mm:ss" starts at offset
+    private long localSeconds(long epochDay, byte[] line, int offset) {
+        int hours = digits(line, offset, 2);
+        int minutes = digits(line, offset + 3, 2);
+        int seconds = digits(line, offset + 6, 2);
+        if (hours > 23 || minutes > 59 || seconds > 60) {
+            throw new NumberFormatException();
+        }
+        return epochDay * 86400 + hours * 3600 + minutes * 60 + seconds - utcOffsetSeconds;
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date
+    private static long epochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new NumberFormatException();
+        }
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int month(byte[] line, int start) {
+        for (int m = 0; m < MONTHS.length; m++) {
+            String name = MONTHS[m];
+            if (lower(line[start]) == name.charAt(0) && lower(line[start + 1]) == name.charAt(1) &&
+                lower(line[start + 2]) == name.charAt(2)) {
+                return m + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int digits(byte[] line, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            byte b = line[i];
+            if (b < '0' || b > '9') {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    private String render(Path file, Scan scan) {
+        StringBuilder out = new StringBuilder();
+        out.append("[Log scan of ").append(file).append(" (").append(sizeOf(scan.size)).append("): ")
+           .append(scan.matches.size()).append(" relevant of ").append(scan.lines).append(" lines scanned from the end");
+        if (scan.stopReason != null) {
+            out.append(", stopped: ").append(scan.stopReason);
+        }
+        out.append(". Kept lines with error or warning keywords");
+        if (!terms.isEmpty()) {
+            out.append(" or any of: ").append(String.join(", ", terms));
+        }
+        out.append(scan.reachedStart ? ". Line numbers are from the start of the file.]"
+                                     : ". Line numbers count back from the end of the file.]");
+
+        List<String> lines = new ArrayList<>(scan.matches);
+        List<Long> numbers = new ArrayList<>(scan.lineNumbers);
+        Collections.reverse(lines);
+        Collections.reverse(numbers);
+        for (int i = 0; i < lines.size(); i++) {
+            long fromEnd = numbers.get(i);
+            String number = scan.reachedStart ? String.valueOf(scan.lines - fromEnd + 1) : "-" + fromEnd;
+            out.append('\n').append(number).append(": ").append(lines.get(i));
+        }
+        return out.toString();
+    }
+
+    private static String sizeOf(long bytes) {
+        if (bytes >= 1L << 30) return String.format("%.1f GB", bytes / (double) (1L << 30));
+        if (bytes >= 1L << 20) return String.format("%.1f MB", bytes / (double) (1L << 20));
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+}
@@ -0,0 +1,331 @@
+package system;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process index of the executables on $PATH, so checking whether a tool is installed costs a few
+ * directory stats instead of a fork of "which".
+ * Each directory is listed once and listed again only when its modification time changes, e.g. after a
+ * package install. Batch lookups let a session drop AI suggestions for tools the host doesn't have
+ * before it spends an execution and an iteration on them.
+ */
+public final class PathIndex {
+    // Shell builtins and keywords are available without being on $PATH
+    private static final Set<String> SHELL_BUILTINS = Set.of(
+        ".", ":", "[", "[[", "alias", "break", "case", "cd", "command", "continue", "declare", "do", "done", "echo",
+        "elif", "else", "esac", "eval", "exec", "exit", "export", "false", "fi", "for", "function", "hash", "if",
+        "local", "printf", "pwd", "read", "return", "set", "shift", "source", "test", "then", "time", "trap", "true",
+        "type", "ulimit", "umask", "unalias", "unset", "until", "wait", "while", "{", "}", "!");
+
+    // Words that run the command after them: sudo and the keywords of compound commands
+    private static final Set<String> COMMAND_PREFIXES = Set.of(
+        "sudo", "if", "then", "elif", "else", "while", "until", "do", "time", "!", "{");
+
+    // Options of those prefixes that take the next word as their value, e.g. "sudo -u postgres psql"
+    private static final Map<String, Set<String>> PREFIX_OPTIONS_WITH_VALUE = Map.of(
+        "sudo", Set.of("-C", "-D", "-g", "-h", "-p", "-R", "-r", "-T", "-t", "-U", "-u",
+                       "--chdir", "--chroot", "--close-from", "--command-timeout", "--group", "--host",
+                       "--other-user", "--prompt", "--role", "--type", "--user"),
+        "time", Set.of("-f", "-o", "--format", "--output"));
+
+    private static volatile PathIndex defaultIndex;
+
+    private final List<Path> directories;
+    private final List<String> extensions;
+    private final Map<Path, Listing> listings = new HashMap<>();
+
+    /**
+     * Executable names of one directory as of its modification time
+     */
+    private static final class Listing {
+        final FileTime modified;
+        final Set<String> executables;
+
+        Listing(FileTime modified, Set<String> executables) {
+            this.modified = modified;
+            this.executables = executables;
+        }
+    }
+
+    /**
+     * @param path A $PATH-style list of directories
+     * @param extensions Suffixes tried after the bare name, e.g. ".exe" on Windows; empty elsewhere
+     */
+    PathIndex(String path, List<String> extensions) {
+        this.directories = new ArrayList<>();
+        if (path != null) {
+            for (String directory : path.split(File.pathSeparator)) {
+                if (!directory.isEmpty()) {
+                    directories.add(Path.of(directory));
+                }
+            }
+        }
+        this.extensions = extensions;
+    }
+
+    /**
+     * @return The index of this process's $PATH
+     */
+    public static PathIndex getDefault() {
+        PathIndex index = defaultIndex;
+        if (index == null) {
+            synchronized (PathIndex.class) {
+                index = defaultIndex;
+                if (index == null) {
+                    List<String> extensions = new ArrayList<>();
+                    if (System.getProperty("os.name").toLowerCase().contains("win")) {
+                        String pathext = System.getenv("PATHEXT");
+                        for (String extension : (pathext == null ? ".COM;.EXE;.BAT;.CMD" : pathext).split(";")) {
+                            extensions.add(extension.toLowerCase());
+                        }
+                    }
+                    index = new PathIndex(System.getenv("PATH"), extensions);
+                    defaultIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param name A command name, or a path containing a slash
+     * @return true if the command can be run
+     */
+    public boolean contains(String name) {
+        return resolve(name) != null;
+    }
+
+    /**
+     * @param name A command name, or a path containing a slash
+     * @return Where the command that would run lives, or null if it isn't installed
+     */
+    public synchronized String resolve(String name) {
+        refresh();
+        return lookup(name);
+    }
+
+    /**
+     * Find the commands among several command lines that are not installed, with one pass over $PATH
+     * @param commands Command lines as proposed by the AI, possibly with pipes and sudo
+     * @return The names of the missing executables, in order of first appearance
+     */
+    public synchronized Set<String> missing(Collection<String> commands) {
+        refresh();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String command : commands) {
+            for (String name : executables(command)) {
+                if (!missing.contains(name) && lookup(name) == null) {
+                    missing.add(name);
+                }
+            }
+        }
+        return missing;
+    }
+
+    private String lookup(String name) {
+        if (name.indexOf('/') >= 0) {
+            return Files.isExecutable(Path.of(name)) ? name : null;
+        }
+        // Windows file names are case-insensitive and are indexed in lower case
+        String key = extensions.isEmpty() ? name : name.toLowerCase();
+        for (Path directory : directories) {
+            Listing listing = listings.get(directory);
+            if (listing == null) {
+                continue;
+            }
+            if (listing.executables.contains(key)) {
+                return directory.resolve(name).toString();
+            }
+            for (String extension : extensions) {
+                if (listing.executables.contains(key + extension)) {
+                    return directory.resolve(name + extension).toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The programs a command line runs: the first word of each simple command, including those in
+     *         $(...) and backquotes, after sudo or time and their options, keywords like "do" and environment
+     *         assignments, leaving out shell builtins and anything that isn't a plain name
+     */
+    public static List<String> executables(String command) {
+        List<List<String>> commands = new ArrayList<>();
+        parse(command, 0, (char) 0, commands);
+        List<String> names = new ArrayList<>();
+        for (List<String> words : commands) {
+            int start = skipPrefixes(words);
+            if (start == words.size()) {
+                continue;
+            }
+            String name = words.get(start);
+            if (!SHELL_BUILTINS.contains(name) && !name.startsWith("-") && name.matches("[A-Za-z0-9_./+-]+") &&
+                !names.contains(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The index of the word that names the program, past prefixes, their options and assignments
+     */
+    private static int skipPrefixes(List<String> words) {
+        int i = 0;
+        while (i < words.size()) {
+            String word = words.get(i);
+            if (word.matches("[A-Za-z_][A-Za-z0-9_]*=.*")) {
+                i++;
+                continue;
+            }
+            if (!COMMAND_PREFIXES.contains(word)) {
+                break;
+            }
+            i++;
+            Set<String> withValue = PREFIX_OPTIONS_WITH_VALUE.getOrDefault(word, Set.of());
+            while (i < words.size() && words.get(i).startsWith("-") && words.get(i).length() > 1) {
+                String option = words.get(i++);
+                if (option.equals("--")) {
+                    break;
+                }
+                if (withValue.contains(option)) {
+                    i++;
+                }
+            }
+        }
+        return Math.min(i, words.size());
+    }
+
+    /**
+     * Split shell source into simple commands and their words, honouring quotes and escapes, so a "|" or ";"
+     * inside quotes or an awk or sed script doesn't start a new command
+     * @param end The character that closes a nested command, ')' or '`', or 0 at the top level
+     * @param commands Receives the words of each simple command, outer commands before the ones they contain
+     * @return The position after the closing character, or the end of the source
+     */
+    private static int parse(String source, int i, char end, List<List<String>> commands) {
+        List<String> words = new ArrayList<>();
+        commands.add(words);
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        char quote = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+                i++;
+            } else if (c == '\\' && i + 1 < source.length()) {
+                word.append(source.charAt(i + 1));
+                inWord = true;
+                i += 2;
+            } else if (source.startsWith("$((", i)) {
+                // Arithmetic runs no commands
+                int close = source.indexOf("))", i + 3);
+                i = close < 0 ? source.length() : close + 2;
+                inWord = true;
+            } else if (source.startsWith("$(", i)) {
+                i = parse(source, i + 2, ')', commands);
+                inWord = true;
+            } else if (c == '`') {
+                if (end == '`') {
+                    break;
+                }
+                i = parse(source, i + 1, '`', commands);
+                inWord = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+                i++;
+            } else if (c == end) {
+                break;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inWord = true;
+                i++;
+            } else if (c == ' ' || c == '\t') {
+                inWord = endWord(words, word, inWord);
+                i++;
+            } else if (c == '|' || c == ';' || c == '&' || c == '\n' || c == '(' || c == ')') {
+                inWord = endWord(words, word, inWord);
+                if (!words.isEmpty()) {
+                    words = new ArrayList<>();
+                    commands.add(words);
+                }
+                i++;
+            } else {
+                word.append(c);
+                inWord = true;
+                i++;
+            }
+        }
+        endWord(words, word, inWord);
+        return Math.min(i + 1, source.length());
+    }
+
+    /**
+     * End the current word, if any
+     * @return false, so the caller resets its in-word flag in the same statement
+     */
+    private static boolean endWord(List<String> words, StringBuilder word, boolean inWord) {
+        if (inWord) {
+            words.add(word.toString());
+            word.setLength(0);
+        }
+        return false;
+    }
+
+    /**
+     * List again every directory that changed since the last lookup; costs one stat per unchanged directory
+     */
+    private void refresh() {
+        for (Path directory : directories) {
+            FileTime modified;
+            try {
+                modified = Files.getLastModifiedTime(directory);
+            } catch (IOException | SecurityException e) {
+                listings.remove(directory);
+                continue;
+            }
+            Listing listing = listings.get(directory);
+            if (listing == null || !listing.modified.equals(modified)) {
+                listings.put(directory, new Listing(modified, list(directory)));
+            }
+        }
+    }
+
+    private Set<String> list(Path directory) {
+        Set<String> executables = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isExecutable(entry) && !Files.isDirectory(entry)) {
+                    String fileName = entry.getFileName().toString();
+                    executables.add(extensions.isEmpty() ? fileName : fileName.toLowerCase());
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            // Unreadable directory; nothing from it can be run by name either
+        }
+        return executables;
+    }
+}
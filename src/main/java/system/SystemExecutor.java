@@ -1,18 +1,68 @@
 package system;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import metrics.Metrics;
+import metrics.Tracer;
 
 public class SystemExecutor {
+    // Last line of the output of a command stopped with cancel()
+    public static final String CANCELLED_MESSAGE = "Command cancelled";
+    
+    // Output is read in chunks of this size, so the output cap is checked before a chunk is kept
+    private static final int READ_BUFFER_BYTES = 8192;
+    
     // Default command timeout (in seconds)
     private static final int DEFAULT_TIMEOUT = 30;
     
+    // A command killed at its deadline counts as still working if it printed something this recently
+    private static final double STALLED_FRACTION = 0.25;
+    
+    // Kills commands at their deadline even while the caller is blocked reading their output
+    private static final ScheduledExecutorService WATCHDOG = createWatchdog();
+    
+    // Commands in progress by the thread waiting on them, so another thread can cancel one
+    private static final Map<Thread, Process> RUNNING = new ConcurrentHashMap<>();
+    
+    private static ScheduledExecutorService createWatchdog() {
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sysai-command-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+        return watchdog;
+    }
+    
+    /**
+     * Kill the command a thread is waiting on, with everything it started, e.g. when the user presses Ctrl-C.
+     * The thread's execute call returns the output read so far followed by a cancellation message.
+     * @param caller The thread that runs the command
+     * @return true if the thread was running a command
+     */
+    public static boolean cancel(Thread caller) {
+        Process process = RUNNING.remove(caller);
+        if (process == null) {
+            return false;
+        }
+        kill(process);
+        return true;
+    }
+    
     /**
      * Execute a command with default timeout
      * @param command List of command arguments
@@ -29,37 +79,203 @@ public class SystemExecutor {
      * @return Output of the command
      */
     public static String executeCommand(List<String> command, int timeoutSeconds) {
+        return executeCommand(command, timeoutSeconds, null);
+    }
+    
+    /**
+     * Execute a command with specified timeout, passing each line of output on as soon as it is read
+     * @param command List of command arguments
+     * @param timeoutSeconds Timeout in seconds
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command
+     */
+    public static String executeCommand(List<String> command, int timeoutSeconds, Consumer<String> onLine) {
+        return executeCommand(command, timeoutSeconds, ExecutionProfile.UNRESTRICTED, onLine);
+    }
+    
+    /**
+     * Execute a command under the resource caps of a profile, passing each line of output on as soon as it is read
+     * @param command List of command arguments
+     * @param timeoutSeconds Timeout in seconds
+     * @param profile Priorities, limits and output cap to run the command with
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command, cut off at the profile's output cap
+     */
+    public static String executeCommand(List<String> command, int timeoutSeconds, ExecutionProfile profile,
+                                        Consumer<String> onLine) {
+        return execute(command, timeoutSeconds * 1000L, profile, onLine, null);
+    }
+    
+    /**
+     * Execute an already parsed command under the resource caps of a profile, with a deadline learned by the
+     * {@link TimeoutPolicy}; for commands run again and again, parsed and classified once
+     * @param command List of command arguments
+     * @param signature The command's {@link TimeoutPolicy#signature}
+     * @param profile Priorities, limits and output cap to run the command with
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command
+     */
+    public static String executeCommand(List<String> command, String signature, ExecutionProfile profile,
+                                        Consumer<String> onLine) {
+        return execute(command, deadlineMillis(signature, profile), profile, onLine, signature);
+    }
+    
+    /**
+     * @param signature Where to record the runtime in the {@link TimeoutPolicy}, or null to not record it
+     */
+    private static String execute(List<String> command, long timeoutMillis, ExecutionProfile profile,
+                                  Consumer<String> onLine, String signature) {
+        Thread caller = Thread.currentThread();
         try {
-            ProcessBuilder builder = new ProcessBuilder(command);
+            ProcessBuilder builder = new ProcessBuilder(profile.wrap(command));
             builder.redirectErrorStream(true);
+            long spawnStart = System.nanoTime();
             Process process = builder.start();
+            RUNNING.put(caller, process);
+            long runStart = System.nanoTime();
+            Metrics.PROCESS_SPAWN.record(runStart - spawnStart);
+            if (Tracer.isEnabled()) {
+                Tracer.span("spawn", "exec", spawnStart, "argv0", command.get(0));
+            }
+            
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> deadline = WATCHDOG.schedule(() -> {
+                timedOut.set(true);
+                kill(process);
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
             
-            // Read output asynchronously
             StringBuilder output = new StringBuilder();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            // Bytes of the line being read; the cap bounds it too, so output without newlines can't grow unchecked
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            InputStream in = process.getInputStream();
+            byte[] buffer = new byte[READ_BUFFER_BYTES];
             
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+            int maxOutput = profile.getMaxOutputBytes();
+            long received = 0;
+            boolean truncated = false;
+            boolean stopped = false;
+            long lastOutput = runStart;
+            int count;
+            while (!stopped && (count = in.read(buffer)) != -1) {
+                lastOutput = System.nanoTime();
+                if (truncated) {
+                    // A command that changes the system must not be killed half-way; drain it without keeping more
+                    continue;
+                }
+                if (maxOutput > 0 && received + count >= maxOutput) {
+                    count = (int) (maxOutput - received);
+                    truncated = true;
+                    if (profile.isStoppedAtOutputCap()) {
+                        // A diagnostic flooding its output is stopped rather than drained
+                        stopped = true;
+                        kill(process);
+                    }
+                }
+                received += count;
+                int lineStart = 0;
+                for (int i = 0; i < count; i++) {
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, lineStart, i - lineStart);
+                        addLine(line, output, onLine);
+                        lineStart = i + 1;
+                    }
+                }
+                line.write(buffer, lineStart, count - lineStart);
+            }
+            // The unfinished line of a truncated command is dropped
+            if (!truncated && line.size() > 0) {
+                addLine(line, output, onLine);
+            }
+            
+            // The output can end before the process does; the watchdog still bounds the wait
+            process.waitFor();
+            deadline.cancel(false);
+            // cancel() takes the process out of the map before killing it
+            boolean cancelled = !RUNNING.remove(caller, process);
+            long end = System.nanoTime();
+            Metrics.COMMAND_RUN.record(end - runStart);
+            boolean completed = !timedOut.get();
+            if (Tracer.isEnabled()) {
+                Tracer.span("command", "exec", runStart, "command", String.join(" ", command), "profile", profile.name(),
+                            "timeout_ms", timeoutMillis, "exit_code", completed ? process.exitValue() : null,
+                            "output_chars", output.length());
             }
             
-            // Wait for process to complete with timeout
-            boolean completed = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            // Killed while still printing means the deadline was too short; killed while silent means a hang,
+            // which must not teach the policy to wait longer next time
+            boolean stalled = end - lastOutput > timeoutMillis * 1_000_000 * STALLED_FRACTION;
+            if (signature != null && !stopped && !cancelled && (completed || !stalled)) {
+                TimeoutPolicy.getDefault().record(signature, (end - runStart) / 1_000_000);
+            }
+            
+            if (cancelled) {
+                status(onLine, "");
+                return output.toString() + "\n" + status(onLine, CANCELLED_MESSAGE);
+            }
             
             if (!completed) {
-                process.destroyForcibly();
-                return "Command timed out after " + timeoutSeconds + " seconds";
+                String message = "Command timed out after " + formatSeconds(timeoutMillis) + " seconds";
+                if (output.length() == 0) {
+                    return status(onLine, message);
+                }
+                status(onLine, "");
+                return output.toString() + "\n" + status(onLine, message);
+            }
+            
+            if (stopped) {
+                status(onLine, "");
+                return output.toString() + "\n" + status(onLine, "Command stopped after " + maxOutput + " bytes of output");
             }
             
             int exitCode = process.exitValue();
+            if (truncated) {
+                status(onLine, "");
+                return output.toString() + "\n" + status(onLine, "Output cut off after " + maxOutput + " bytes; the command ran to completion" +
+                                                                  (exitCode != 0 ? " and exited with code " + exitCode : ""));
+            }
+            
             if (exitCode != 0) {
-                return output.toString() + "\nCommand exited with code " + exitCode;
+                status(onLine, "");
+                return output.toString() + "\n" + status(onLine, "Command exited with code " + exitCode + profile.describeExit(exitCode));
             }
             
             return output.toString();
         } catch (Exception e) {
-            return "Error executing command: " + e.getMessage();
+            return status(onLine, "Error executing command: " + e.getMessage());
+        } finally {
+            RUNNING.remove(caller);
+        }
+    }
+    
+    /**
+     * Decode a complete line of output, keep it and pass it on
+     */
+    private static void addLine(ByteArrayOutputStream line, StringBuilder output, Consumer<String> onLine) {
+        String text = line.toString(Charset.defaultCharset());
+        line.reset();
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        output.append(text).append("\n");
+        if (onLine != null) {
+            onLine.accept(text);
+        }
+    }
+    
+    private static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+    
+    private static String formatSeconds(long millis) {
+        return millis % 1000 == 0 ? String.valueOf(millis / 1000) : String.format("%.1f", millis / 1000.0);
+    }
+    
+    private static String status(Consumer<String> onLine, String message) {
+        if (onLine != null) {
+            onLine.accept(message);
         }
+        return message;
     }
     
     /**
@@ -121,7 +337,18 @@ public class SystemExecutor {
      * @return Output of the command
      */
     public static String executeCommandString(String commandStr) {
-        return executeCommandString(commandStr, DEFAULT_TIMEOUT);
+        return executeCommandString(commandStr, ExecutionProfile.UNRESTRICTED, null);
+    }
+    
+    /**
+     * Execute a command string with a timeout learned by the {@link TimeoutPolicy}, passing each line of
+     * output on as soon as it is read
+     * @param commandStr Command string to execute
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command
+     */
+    public static String executeCommandString(String commandStr, Consumer<String> onLine) {
+        return executeCommandString(commandStr, ExecutionProfile.UNRESTRICTED, onLine);
     }
     
     /**
@@ -131,27 +358,95 @@ public class SystemExecutor {
      * @return Output of the command
      */
     public static String executeCommandString(String commandStr, int timeoutSeconds) {
+        return executeCommandString(commandStr, timeoutSeconds, null);
+    }
+    
+    /**
+     * Execute a command string with specified timeout, passing each line of output on as soon as it is read
+     * @param commandStr Command string to execute
+     * @param timeoutSeconds Timeout in seconds
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command
+     */
+    public static String executeCommandString(String commandStr, int timeoutSeconds, Consumer<String> onLine) {
+        return executeCommandString(commandStr, timeoutSeconds, ExecutionProfile.UNRESTRICTED, onLine);
+    }
+    
+    /**
+     * Execute a command string under the resource caps of a profile, with a deadline learned by the
+     * {@link TimeoutPolicy} from earlier runs of the same kind of command; commands that may change the
+     * system get at least the default
+     * @param commandStr Command string to execute
+     * @param profile Priorities, limits and output cap to run the command with
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command
+     */
+    public static String executeCommandString(String commandStr, ExecutionProfile profile, Consumer<String> onLine) {
+        String signature = TimeoutPolicy.signature(commandStr);
+        if (signature.isEmpty()) {
+            return status(onLine, "Error: Empty command");
+        }
+        return executeCommandString(commandStr, deadlineMillis(signature, profile), profile, onLine, signature);
+    }
+    
+    /**
+     * Learned deadlines can be as short as a few seconds. A diagnostic that overruns one is most likely hung,
+     * but a restart or package operation that is slower than usual must not be killed half-way, so commands
+     * that may change the system never get less than the default.
+     */
+    static long deadlineMillis(String signature, ExecutionProfile profile) {
+        long learned = TimeoutPolicy.getDefault().timeoutMillis(signature);
+        return profile == ExecutionProfile.DIAGNOSTIC ? learned : Math.max(learned, TimeoutPolicy.DEFAULT_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Execute a command string with specified timeout under the resource caps of a profile
+     * @param commandStr Command string to execute
+     * @param timeoutSeconds Timeout in seconds
+     * @param profile Priorities, limits and output cap to run the command with
+     * @param onLine Receives each output line without its terminator, then any status line; may be null
+     * @return Output of the command
+     */
+    public static String executeCommandString(String commandStr, int timeoutSeconds, ExecutionProfile profile,
+                                              Consumer<String> onLine) {
+        return executeCommandString(commandStr, timeoutSeconds * 1000L, profile, onLine, null);
+    }
+    
+    private static String executeCommandString(String commandStr, long timeoutMillis, ExecutionProfile profile,
+                                               Consumer<String> onLine, String signature) {
         // Handle shell operators for complex commands
-        if (commandStr.contains("|") || commandStr.contains(">") || 
-            commandStr.contains("&&") || commandStr.contains(";")) {
-            return executeShellCommand(commandStr, timeoutSeconds);
+        if (needsShell(commandStr)) {
+            return executeShellCommand(commandStr, timeoutMillis, profile, onLine, signature);
         }
         
         List<String> command = parseCommand(commandStr);
         if (command.isEmpty()) {
-            return "Error: Empty command";
+            return status(onLine, "Error: Empty command");
         }
         
-        return executeCommand(command, timeoutSeconds);
+        return execute(command, timeoutMillis, profile, onLine, signature);
+    }
+    
+    /**
+     * Check whether a command string uses shell operators and has to run through the system shell.
+     * Commands that don't can be parsed once with {@link #parseCommand} and run directly with {@link #executeCommand}.
+     */
+    public static boolean needsShell(String commandStr) {
+        return commandStr.contains("|") || commandStr.contains(">") ||
+               commandStr.contains("&&") || commandStr.contains(";");
     }
     
     /**
      * Execute a command using the system shell for complex commands with pipes, redirects, etc.
      * @param commandStr Command string to execute
-     * @param timeoutSeconds Timeout in seconds
+     * @param timeoutMillis Timeout in milliseconds
+     * @param profile Priorities, limits and output cap; they apply to every process of the pipeline
+     * @param onLine Receives each output line as it is read; may be null
+     * @param signature Where to record the runtime in the {@link TimeoutPolicy}, or null to not record it
      * @return Output of the command
      */
-    private static String executeShellCommand(String commandStr, int timeoutSeconds) {
+    private static String executeShellCommand(String commandStr, long timeoutMillis, ExecutionProfile profile,
+                                              Consumer<String> onLine, String signature) {
         try {
             // Determine which shell to use based on OS
             List<String> command = new ArrayList<>();
@@ -170,9 +465,9 @@ public class SystemExecutor {
             }
             
             command.add(commandStr);
-            return executeCommand(command, timeoutSeconds);
+            return execute(command, timeoutMillis, profile, onLine, signature);
         } catch (Exception e) {
-            return "Error executing shell command: " + e.getMessage();
+            return status(onLine, "Error executing shell command: " + e.getMessage());
         }
     }
     
@@ -182,15 +477,6 @@ public class SystemExecutor {
      * @return true if the command exists and is executable
      */
     public static boolean commandExists(String command) {
-        try {
-            String checkCommand = System.getProperty("os.name").toLowerCase().contains("win") 
-                ? "where " + command 
-                : "which " + command;
-            
-            Process process = Runtime.getRuntime().exec(checkCommand);
-            return process.waitFor() == 0;
-        } catch (Exception e) {
-            return false;
-        }
+        return PathIndex.getDefault().contains(command);
     }
 }
@@ -0,0 +1,256 @@
+package system;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+import util.AtomicFiles;
+
+/**
+ * Per-command timeouts learned from how long each kind of command took before.
+ * Runtimes are kept per command signature (executable, subcommand and flag names) in a histogram with
+ * quarter-octave buckets, and the deadline is {@link #P99_MULTIPLIER} times the observed p99, within
+ * [{@link #MIN_TIMEOUT_MILLIS}, {@link #MAX_TIMEOUT_MILLIS}]. A "df" that normally answers in milliseconds
+ * fails after a few seconds when an NFS mount hangs, while a "journalctl --since" that needs a minute is not
+ * killed. Counts are halved once a signature has {@link #DECAY_AT} samples, so the estimate follows changes
+ * on the host. The histograms are kept in ~/.sysai/timeouts.json, written {@link #SAVE_DELAY_MILLIS} after
+ * the first unsaved change and again when the JVM exits, so a burst of commands costs one write.
+ */
+public final class TimeoutPolicy {
+    static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    static final long MIN_TIMEOUT_MILLIS = 3_000;
+    static final long MAX_TIMEOUT_MILLIS = 300_000;
+    static final int P99_MULTIPLIER = 3;
+    // Samples needed before the learned deadline replaces the default
+    static final int MIN_SAMPLES = 5;
+    static final int DECAY_AT = 200;
+    static final long SAVE_DELAY_MILLIS = 2_000;
+
+    private static final int CACHE_VERSION = 1;
+    private static final int BUCKETS_PER_OCTAVE = 4;
+    // Most flags that go into a signature; more would split the history of one command too finely
+    private static final int MAX_FLAGS = 6;
+
+    private static final ScheduledExecutorService SAVER = createSaver();
+
+    private static volatile TimeoutPolicy defaultPolicy;
+
+    private final Path file;
+    private final Map<String, double[]> histograms = new HashMap<>();
+    // Held while writing, so an older snapshot can never replace a newer one on disk
+    private final Object saveLock = new Object();
+    private boolean dirty;
+    private ScheduledFuture<?> pendingSave;
+
+    /**
+     * @param file Where the histograms are kept between runs
+     */
+    TimeoutPolicy(Path file) {
+        this.file = file;
+        load();
+    }
+
+    private static ScheduledExecutorService createSaver() {
+        ScheduledThreadPoolExecutor saver = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sysai-timeouts-save");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.setRemoveOnCancelPolicy(true);
+        return saver;
+    }
+
+    /**
+     * @return The policy backed by ~/.sysai/timeouts.json, saved on exit
+     */
+    public static TimeoutPolicy getDefault() {
+        TimeoutPolicy policy = defaultPolicy;
+        if (policy == null) {
+            synchronized (TimeoutPolicy.class) {
+                policy = defaultPolicy;
+                if (policy == null) {
+                    policy = new TimeoutPolicy(Path.of(System.getProperty("user.home"), ".sysai", "timeouts.json"));
+                    defaultPolicy = policy;
+                    Runtime.getRuntime().addShutdownHook(new Thread(policy::flush, "sysai-timeouts-flush"));
+                }
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * The kind of a command, e.g. "journalctl --since" or "systemctl status | grep", without paths and values
+     * that differ between runs of what is essentially the same command
+     */
+    public static String signature(String command) {
+        StringBuilder signature = new StringBuilder();
+        for (String segment : command.split("\\|\\|?|&&|;")) {
+            List<String> tokens = SystemExecutor.parseCommand(segment.trim());
+            int start = 0;
+            // Environment assignments and sudo don't change what runs
+            while (start < tokens.size() && (tokens.get(start).equals("sudo") || tokens.get(start).matches("[A-Za-z_][A-Za-z0-9_]*=.*"))) {
+                start++;
+            }
+            if (start == tokens.size()) {
+                continue;
+            }
+            String executable = tokens.get(start);
+            if (signature.length() > 0) {
+                signature.append(" | ");
+            }
+            signature.append(executable.substring(executable.lastIndexOf('/') + 1));
+
+            TreeSet<String> flags = new TreeSet<>();
+            for (int i = start + 1; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if (token.startsWith("-") && token.length() > 1) {
+                    int equals = token.indexOf('=');
+                    flags.add(equals < 0 ? token : token.substring(0, equals));
+                } else if (i == start + 1 && token.matches("[a-z][a-z0-9-]*")) {
+                    // A subcommand like "systemctl status" or "ip addr"
+                    signature.append(' ').append(token);
+                }
+            }
+            int added = 0;
+            for (String flag : flags) {
+                if (added++ == MAX_FLAGS) break;
+                signature.append(' ').append(flag);
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @return The deadline for a command with this signature
+     */
+    public synchronized long timeoutMillis(String signature) {
+        double[] histogram = histograms.get(signature);
+        double total = histogram == null ? 0 : total(histogram);
+        if (total < MIN_SAMPLES) {
+            return DEFAULT_TIMEOUT_MILLIS;
+        }
+        double cumulative = 0;
+        int bucket = 0;
+        for (; bucket < histogram.length; bucket++) {
+            cumulative += histogram[bucket];
+            if (cumulative >= total * 0.99) break;
+        }
+        long p99 = (long) Math.ceil(Math.pow(2, (bucket + 1) / (double) BUCKETS_PER_OCTAVE));
+        return Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS, p99 * P99_MULTIPLIER));
+    }
+
+    /**
+     * Learn from a finished run; the result reaches the disk with the next {@link #flush}
+     * @param elapsedMillis How long the command ran, or its deadline if it was killed while still producing
+     *                      output; commands killed while stalled should not be recorded, so hangs stay fast to fail
+     */
+    public synchronized void record(String signature, long elapsedMillis) {
+        double[] histogram = histograms.get(signature);
+        int bucket = bucketFor(elapsedMillis);
+        if (histogram == null || histogram.length <= bucket) {
+            double[] grown = new double[bucket + 1];
+            if (histogram != null) {
+                System.arraycopy(histogram, 0, grown, 0, histogram.length);
+            }
+            histogram = grown;
+            histograms.put(signature, histogram);
+        }
+        histogram[bucket]++;
+        if (total(histogram) >= DECAY_AT) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] /= 2;
+            }
+        }
+        dirty = true;
+        if (pendingSave == null) {
+            pendingSave = SAVER.schedule(this::flush, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write unsaved changes to disk now. The histograms are copied under the lock and written outside it, so
+     * commands finishing meanwhile don't wait for the disk.
+     */
+    public void flush() {
+        synchronized (saveLock) {
+            String content;
+            synchronized (this) {
+                if (pendingSave != null) {
+                    pendingSave.cancel(false);
+                    pendingSave = null;
+                }
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                content = toJson().toString();
+            }
+            try {
+                AtomicFiles.writeString(file, content);
+            } catch (IOException e) {
+                // The history only tunes deadlines; the defaults still apply
+            }
+        }
+    }
+
+    static int bucketFor(long millis) {
+        return millis <= 1 ? 0 : (int) Math.floor(BUCKETS_PER_OCTAVE * Math.log(millis) / Math.log(2));
+    }
+
+    private static double total(double[] histogram) {
+        double total = 0;
+        for (double count : histogram) {
+            total += count;
+        }
+        return total;
+    }
+
+    private JSONObject toJson() {
+        JSONObject commands = new JSONObject();
+        for (Map.Entry<String, double[]> entry : histograms.entrySet()) {
+            JSONObject buckets = new JSONObject();
+            double[] histogram = entry.getValue();
+            for (int i = 0; i < histogram.length; i++) {
+                if (histogram[i] > 0) {
+                    buckets.put(String.valueOf(i), histogram[i]);
+                }
+            }
+            commands.put(entry.getKey(), buckets);
+        }
+        return new JSONObject().put("version", CACHE_VERSION).put("commands", commands);
+    }
+
+    private void load() {
+        try {
+            JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+            if (json.optInt("version") != CACHE_VERSION) {
+                return;
+            }
+            JSONObject commands = json.getJSONObject("commands");
+            for (String signature : commands.keySet()) {
+                JSONObject buckets = commands.getJSONObject(signature);
+                int size = 0;
+                for (String bucket : buckets.keySet()) {
+                    size = Math.max(size, Integer.parseInt(bucket) + 1);
+                }
+                double[] histogram = new double[size];
+                for (String bucket : buckets.keySet()) {
+                    histogram[Integer.parseInt(bucket)] = buckets.getDouble(bucket);
+                }
+                histograms.put(signature, histogram);
+            }
+        } catch (IOException | JSONException | NumberFormatException e) {
+            // No usable history yet; every command starts with the default timeout
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files through a temp file and an atomic rename, so concurrent readers — another sysai
+ * process or a metrics collector — see either the old content or the new one, never a partial write
+ */
+public final class AtomicFiles {
+    /**
+     * Fills the temp file that is about to replace the target
+     */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(Path temp) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Replace {@code file} with whatever {@code content} writes, creating its directory if needed
+     */
+    public static void write(Path file, Content content) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        // The temp file must share the target's directory, or the move can't be atomic
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            content.writeTo(temp);
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Replace {@code file} with {@code text} encoded as UTF-8
+     */
+    public static void writeString(Path file, String text) throws IOException {
+        write(file, temp -> Files.writeString(temp, text, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+# Measure start-up to first prompt, with and without the AppCDS archive.
+# Runs the interactive CLI against the offline Fake provider and exits at the first prompt.
+# Usage: measure-startup.sh <jar> <archive> [runs]
+
+JAR="$1"
+ARCHIVE="$2"
+RUNS="${3:-5}"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+HOME_DIR=$(mktemp -d)
+trap 'rm -rf "$HOME_DIR"' EXIT
+echo '{"provider": "Fake", "model": "fake", "apiKey": ""}' > "$HOME_DIR/.sysai_config.json"
+
+now_ms() {
+    date +%s%3N
+}
+
+# Print the median wall time, in milliseconds, of RUNS start-ups with the given JVM options
+median_startup() {
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        start=$(now_ms)
+        echo exit | "$JAVA" -Duser.home="$HOME_DIR" "$@" -jar "$JAR" --no-cache > /dev/null
+        end=$(now_ms)
+        echo $((end - start))
+        i=$((i + 1))
+    done | sort -n | awk '{ t[NR] = $1 } END { print t[int((NR + 1) / 2)] }'
+}
+
+baseline=$(median_startup -Xshare:auto)
+echo "Start-up to first prompt (default CDS): ${baseline} ms"
+
+if [ -f "$ARCHIVE" ]; then
+    appcds=$(median_startup -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto)
+    echo "Start-up to first prompt (AppCDS):      ${appcds} ms"
+else
+    echo "No AppCDS archive at $ARCHIVE"
+fi
@@ -1,8 +1,18 @@
 package ai;
 
+import com.sun.net.httpserver.HttpServer;
+import loadtest.MockLLMServer;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
 public class AIHandlerTest {
     
     @Test
@@ -18,6 +28,18 @@ public class AIHandlerTest {
         AIHandler openAIHandler = new AIHandler("OpenAI", "gpt4", "fake-api-key");
         assertEquals("gpt-4", openAIHandler.getModel());
     }
+
+    @Test
+    public void testFastModelNameCorrection() {
+        AIHandler handler = new AIHandler("Gemini", "gemini-pro", "fake-api-key");
+
+        // The fast model is corrected like the main one and is unset until configured
+        assertNull(handler.getFastModel());
+        handler.setFastModel("gemini");
+        assertEquals("gemini-pro", handler.getFastModel());
+        handler.setFastModel("");
+        assertNull(handler.getFastModel());
+    }
     
     @Test
     public void testProviderSelection() {
@@ -34,4 +56,101 @@ public class AIHandlerTest {
         String response = unknownHandler.sendQuery("test");
         assertTrue(response.startsWith("Unknown provider:"), "Expected unknown provider message");
     }
+    
+    @Test
+    public void testLocalProviderUsesBaseUrlWithoutModelWhitelist() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        StringBuilder requestPath = new StringBuilder();
+        server.createContext("/v1/chat/completions", exchange -> {
+            requestPath.append(exchange.getRequestURI().getPath());
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ("{\"choices\":[{\"message\":{\"role\":\"assistant\"," +
+                           "\"content\":\"COMMAND: uptime\\nPURPOSE: load\"}}]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/";
+            AIHandler handler = new AIHandler("Local", "llama-3-8b-instruct", "", baseUrl);
+            assertEquals("llama-3-8b-instruct", handler.getModel());
+            UsageTracker usage = new UsageTracker();
+            assertEquals("COMMAND: uptime\nPURPOSE: load", handler.sendQuery("test", false, usage));
+            assertEquals("/v1/chat/completions", requestPath.toString());
+            // The server reports no usage, so the tokens are estimated from the text
+            assertEquals(1, usage.getCalls());
+            assertEquals(1, usage.getPromptTokens());
+            assertTrue(usage.isEstimated());
+        } finally {
+            server.stop(0);
+        }
+        
+        AIHandler missingUrl = new AIHandler("Local", "llama-3-8b-instruct", "");
+        assertTrue(missingUrl.sendQuery("test").startsWith("[ERROR] Invalid configuration"));
+    }
+    
+    @Test
+    public void testReportedTokenUsageIsAccounted() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().script(List.of("COMMAND: df -h"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            UsageTracker usage = new UsageTracker();
+            String prompt = "check disk space ".repeat(10);
+            assertEquals("COMMAND: df -h", handler.sendQuery(prompt, false, usage));
+
+            // The mock reports a quarter of the characters, rounded up
+            assertEquals(1, usage.getCalls());
+            assertEquals((prompt.length() + 3) / 4, usage.getPromptTokens());
+            assertEquals(4, usage.getCompletionTokens());
+            assertFalse(usage.isEstimated());
+            assertTrue(ProviderMetrics.forProvider("OpenAI").getPromptTokens() >= usage.getPromptTokens());
+            assertEquals(usage.getTotalTokens(), usage.toJson().getLong("promptTokens") + usage.toJson().getLong("completionTokens"));
+        }
+    }
+
+    @Test
+    public void testIsCachedAfterCacheableAnswer(@TempDir Path directory) throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().script(List.of("COMMAND: df -h"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            assertFalse(handler.isCached("check disk space", true, false));
+            handler.setResponseCache(new ResponseCache(directory, 16, 1 << 20, Duration.ofHours(1)));
+            handler.sendQuery("check disk space", true);
+
+            assertTrue(handler.isCached("check disk space", true, false));
+            assertFalse(handler.isCached("check disk space", true, true));
+            assertFalse(handler.isCached("check memory", true, false));
+        }
+    }
+
+    @Test
+    public void testCacheIsKeyedByEndpoint(@TempDir Path directory) throws Exception {
+        ResponseCache cache = new ResponseCache(directory, 16, 1 << 20, Duration.ofHours(1));
+        try (MockLLMServer first = new MockLLMServer().start(); MockLLMServer second = new MockLLMServer().start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", first.getBaseUrl());
+            handler.setResponseCache(cache);
+            handler.sendQuery("check disk space");
+            handler.sendQuery("check disk space");
+            assertEquals(1, first.getRequests());
+
+            // Another server with the same model name doesn't get the first server's answer
+            AIHandler other = new AIHandler("OpenAI", "gpt-4", "mock-key", second.getBaseUrl());
+            other.setResponseCache(cache);
+            other.sendQuery("check disk space");
+            assertEquals(1, second.getRequests());
+        }
+    }
+
+    @Test
+    public void testProvidersAreDiscoveredThroughServiceLoader() {
+        assertTrue(AIProviders.names().containsAll(java.util.List.of("OpenAI", "Gemini", "Local", "Fake")));
+        assertTrue(AIProviders.find("gemini") instanceof GeminiProvider);
+        assertNull(AIProviders.find("Unknown"));
+        
+        AIHandler fake = new AIHandler("Fake", "any-model", "");
+        assertTrue(fake.sendQuery("diagnose").contains("COMMAND: uptime"));
+        assertTrue(fake.sendQuery("... PROBLEM_RESOLVED ...").endsWith("PROBLEM_RESOLVED: YES"));
+        assertEquals(0, ProviderMetrics.forProvider("Fake").getFailures());
+        assertTrue(ProviderMetrics.forProvider("Fake").getCalls() >= 2);
+    }
 }
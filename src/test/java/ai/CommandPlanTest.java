@@ -0,0 +1,51 @@
+package ai;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.json.JSONObject;
+
+public class CommandPlanTest {
+    @Test
+    public void testFromJson() {
+        CommandPlan plan = CommandPlan.fromJson("```json\n" +
+            "{\"commands\": [{\"command\": \"df -h\", \"purpose\": \"disk usage\", \"readOnly\": true}," +
+            "{\"command\": \"  \", \"purpose\": \"blank\", \"readOnly\": true}," +
+            "{\"command\": \"systemctl restart nginx\", \"purpose\": \"restart\", \"readOnly\": false}]," +
+            "\"resolved\": false, \"resolution\": \"needs a restart\"}\n```");
+        
+        assertNotNull(plan);
+        assertEquals(2, plan.getCommands().size());
+        assertEquals("df -h", plan.getCommands().get(0).getCommand());
+        assertTrue(plan.getCommands().get(0).isReadOnly());
+        assertFalse(plan.getCommands().get(1).isReadOnly());
+        assertFalse(plan.isResolved());
+        assertEquals("needs a restart", plan.getResolution());
+    }
+    
+    @Test
+    public void testInvalidJsonIsRejected() {
+        assertNull(CommandPlan.fromJson(null));
+        assertNull(CommandPlan.fromJson("COMMAND: df -h"));
+        assertNull(CommandPlan.fromJson("{\"resolved\": true}"));
+    }
+    
+    @Test
+    public void testGeminiSchemaConversion() {
+        JSONObject schema = GeminiProvider.toGeminiSchema(CommandPlan.jsonSchema());
+        assertEquals("OBJECT", schema.getString("type"));
+        assertFalse(schema.has("additionalProperties"));
+        JSONObject item = schema.getJSONObject("properties").getJSONObject("commands").getJSONObject("items");
+        assertEquals("BOOLEAN", item.getJSONObject("properties").getJSONObject("readOnly").getString("type"));
+        assertFalse(item.has("additionalProperties"));
+    }
+    
+    @Test
+    public void testStructuredQueryThroughHandler() {
+        AIHandler handler = new AIHandler("Fake", "any-model", "");
+        CommandPlan plan = handler.sendStructuredQuery("diagnose slow disk");
+        assertNotNull(plan);
+        assertEquals("uptime", plan.getCommands().get(0).getCommand());
+        assertNull(new AIHandler("Unknown", "model", "").sendStructuredQuery("test"));
+    }
+}
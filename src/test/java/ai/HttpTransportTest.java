@@ -0,0 +1,80 @@
+package ai;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpTransportTest {
+    @Test
+    public void testGzipRequestAndResponse() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            // Decompress the request and send it back gzip-encoded
+            byte[] body;
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                body = in.readAllBytes();
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            String payload = "x".repeat(HttpTransport.COMPRESSION_THRESHOLD_BYTES * 4);
+            URI uri = new URI("http://127.0.0.1:" + server.getAddress().getPort() + "/echo");
+            HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            HttpTransport.writePayload(conn, payload, true);
+            
+            assertEquals(200, conn.getResponseCode());
+            assertEquals("gzip", conn.getRequestProperty("Content-Encoding"));
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try (InputStream in = HttpTransport.openResponseStream(conn, false)) {
+                in.transferTo(received);
+            }
+            assertEquals(payload, received.toString(StandardCharsets.UTF_8));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testStalledProviderTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stall", exchange -> {
+            // Accept the request but never answer it
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            ProviderRequest request = new ProviderRequest("http://127.0.0.1:" + server.getAddress().getPort() + "/stall", "{}");
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, () -> HttpTransport.post(request, 1000, 200));
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+public class ResponseCacheTest {
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    public void testKeyDependsOnAllFields() {
+        String key = ResponseCache.key("OpenAI", null, "gpt-4", 0.2, "prompt");
+        assertEquals(64, key.length());
+        assertEquals(key, ResponseCache.key("openai", null, "gpt-4", 0.2, "prompt"));
+        assertNotEquals(key, ResponseCache.key("Gemini", null, "gpt-4", 0.2, "prompt"));
+        assertNotEquals(key, ResponseCache.key("OpenAI", null, "gpt-3.5-turbo", 0.2, "prompt"));
+        assertNotEquals(key, ResponseCache.key("OpenAI", null, "gpt-4", 0.7, "prompt"));
+        assertNotEquals(key, ResponseCache.key("OpenAI", null, "gpt-4", 0.2, "other prompt"));
+        // Two servers serving the same model name must not share answers
+        assertNotEquals(key, ResponseCache.key("OpenAI", "http://localhost:8080/v1", "gpt-4", 0.2, "prompt"));
+        assertNotEquals(ResponseCache.key("Local", "http://a:8080/v1", "llama", 0.2, "prompt"),
+                        ResponseCache.key("Local", "http://b:8080/v1", "llama", 0.2, "prompt"));
+    }
+
+    @Test
+    public void testDiskTierSurvivesNewInstance() {
+        String key = ResponseCache.key("OpenAI", null, "gpt-4", 0.2, "check disk");
+        new ResponseCache(cacheDir, 4, 1024 * 1024, Duration.ofHours(1)).put(key, "COMMAND: df -h");
+
+        ResponseCache reopened = new ResponseCache(cacheDir, 4, 1024 * 1024, Duration.ofHours(1));
+        assertEquals("COMMAND: df -h", reopened.get(key));
+        assertNull(reopened.get(ResponseCache.key("OpenAI", null, "gpt-4", 0.2, "unknown")));
+    }
+
+    @Test
+    public void testExpiredEntriesAreMisses() {
+        Clock past = Clock.fixed(Instant.now().minus(Duration.ofHours(2)), ZoneOffset.UTC);
+        String key = ResponseCache.key("Gemini", null, "gemini-pro", 0.2, "old");
+        new ResponseCache(cacheDir, 4, 1024 * 1024, Duration.ofHours(1), past).put(key, "stale");
+
+        ResponseCache cache = new ResponseCache(cacheDir, 4, 1024 * 1024, Duration.ofHours(1));
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testErrorsAreNotCacheable() {
+        assertTrue(ResponseCache.isCacheable("COMMAND: uptime"));
+        assertFalse(ResponseCache.isCacheable("[ERROR] Failed to contact AI provider"));
+        assertFalse(ResponseCache.isCacheable("[DEBUG] Raw Gemini response: {}"));
+        assertFalse(ResponseCache.isCacheable(null));
+    }
+}
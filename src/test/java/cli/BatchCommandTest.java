@@ -0,0 +1,57 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+class BatchCommandTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBatchRunsSafeDiagnosticsAndNeverSolutions() throws Exception {
+        Path input = tempDir.resolve("queries.jsonl");
+        Path output = tempDir.resolve("results.jsonl");
+        Files.writeString(input, "{\"id\": \"alert-1\", \"query\": \"check disk space\"}\n\ncheck load\n");
+
+        int exitCode = new CommandLine(new Main()).execute("batch", "--input", input.toString(),
+            "--output", output.toString(), "--concurrency", "2", "--provider", "Fake", "--model", "fake", "--no-cache");
+        assertEquals(0, exitCode);
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            JSONObject result = new JSONObject(line);
+            assertTrue(result.getString("id").equals("alert-1") || result.getString("id").equals("3"));
+            assertEquals(1, result.getInt("iterations"));
+            assertTrue(result.getBoolean("resolved"));
+
+            JSONArray commands = result.getJSONArray("commands");
+            for (int i = 0; i < commands.length(); i++) {
+                JSONObject command = commands.getJSONObject(i);
+                if (command.getString("phase").equals(TroubleshootingSession.SOLUTION)) {
+                    assertEquals("skipped", command.getString("status"));
+                } else {
+                    assertEquals("executed", command.getString("status"));
+                    assertTrue(command.has("output"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testParseRequest() {
+        assertEquals("disk full", BatchCommand.parseRequest("disk full", 7).getString("query"));
+        assertEquals("7", BatchCommand.parseRequest("disk full", 7).getString("id"));
+        JSONObject request = BatchCommand.parseRequest("{\"id\": 42, \"query\": \"nginx down\"}", 1);
+        assertEquals(42, request.getInt("id"));
+        assertEquals("nginx down", request.getString("query"));
+    }
+}
@@ -0,0 +1,60 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+class DaemonCommandTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDaemonAnswersOverUnixSocket() throws Exception {
+        Path socket = tempDir.resolve("sysai.sock");
+        Thread daemon = new Thread(() -> new CommandLine(new Main()).execute("daemon", "--socket", socket.toString(),
+            "--provider", "Fake", "--model", "fake", "--no-cache"));
+        daemon.start();
+        try {
+            DaemonClient client = connect(socket);
+            try (client) {
+                assertTrue(client.send(new JSONObject().put("ping", true)).getBoolean("pong"));
+
+                JSONObject result = client.send(new JSONObject().put("id", "q1").put("query", "check disk space"));
+                assertEquals("q1", result.getString("id"));
+                assertTrue(result.getBoolean("resolved"));
+                assertFalse(result.has("error"));
+            }
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+            // The socket was bound in a private directory and moved into place; nothing of that is left behind
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(List.of(socket), files.toList());
+            }
+        } finally {
+            daemon.interrupt();
+            daemon.join(5000);
+        }
+        assertFalse(daemon.isAlive());
+        assertFalse(Files.exists(socket));
+    }
+
+    private static DaemonClient connect(Path socket) throws Exception {
+        // The daemon binds asynchronously; retry until it is listening
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new DaemonClient(socket);
+            } catch (IOException e) {
+                if (attempt == 100) throw e;
+                Thread.sleep(50);
+            }
+        }
+    }
+}
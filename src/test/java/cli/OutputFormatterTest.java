@@ -0,0 +1,33 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputFormatterTest {
+    @Test
+    void testTruncatesLinesAndCountsHiddenOnes() {
+        StringBuilder output = new StringBuilder("x".repeat(150)).append('\n');
+        for (int i = 1; i < 25; i++) {
+            output.append("line ").append(i).append('\n');
+        }
+        String formatted = OutputFormatter.format(output.toString());
+        assertTrue(formatted.startsWith("x".repeat(100) + "...\nline 1\n"), formatted);
+        assertTrue(formatted.contains("line 19\n"));
+        assertFalse(formatted.contains("line 20"));
+        assertTrue(formatted.endsWith("... (5 more lines not shown)\n"), formatted);
+    }
+
+    @Test
+    void testStreamingMatchesBufferedAndDropsTrailingBlankLines() {
+        StringBuilder terminal = new StringBuilder();
+        OutputFormatter formatter = new OutputFormatter(terminal);
+        for (String line : new String[] {"", "a", "", "b", "", "  "}) {
+            formatter.accept(line);
+        }
+        formatter.finish();
+        assertEquals("\na\n\nb\n", terminal.toString());
+        assertEquals(terminal.toString(), OutputFormatter.format("\na\n\nb\n\n  \n"));
+        assertEquals("(No output)\n", OutputFormatter.format(" \n\n"));
+        assertEquals("(No output)\n", OutputFormatter.format(null));
+    }
+}
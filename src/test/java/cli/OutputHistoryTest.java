@@ -0,0 +1,51 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class OutputHistoryTest {
+    @Test
+    void testRepeatedCommandsAddOnlyWhatChanged() {
+        OutputHistory history = new OutputHistory();
+        StringBuilder processes = new StringBuilder();
+        for (int i = 1; i <= 30; i++) {
+            processes.append("pid ").append(i).append(" worker\n");
+        }
+        String first = processes.toString();
+        assertEquals(first, history.describe("ps aux", first));
+        assertEquals("(unchanged since the previous run)", history.describe("ps aux", first));
+
+        String second = first.replace("pid 15 worker\n", "pid 15 worker (defunct)\n") + "pid 31 worker\n";
+        assertEquals("(changed since the previous run, unified diff)\n" +
+                     "@@ -13,5 +13,5 @@\n pid 13 worker\n pid 14 worker\n-pid 15 worker\n+pid 15 worker (defunct)\n pid 16 worker\n pid 17 worker\n" +
+                     "@@ -29,3 +29,4 @@\n pid 29 worker\n pid 30 worker\n+pid 31 worker\n ",
+                     history.describe("ps aux", second));
+
+        // A diff longer than the new output is not worth sending
+        assertEquals("all new\n", history.describe("ps aux", "all new\n"));
+        assertEquals("up 1 day", history.describe("uptime", "up 1 day"));
+
+        // After the context is compacted, a repeated command is sent in full again
+        history.clear();
+        assertEquals("up 1 day", history.describe("uptime", "up 1 day"));
+    }
+
+    @Test
+    void testDiffMatchesEditScript() {
+        assertEquals("", LineDiff.unified(List.of("a", "b"), List.of("a", "b"), 2));
+        assertEquals("@@ -1,3 +1,3 @@\n a\n-b\n+x\n c", LineDiff.unified(List.of("a", "b", "c"), List.of("a", "x", "c"), 1));
+        assertEquals("@@ -0,0 +1,2 @@\n+a\n+b", LineDiff.unified(List.of(), List.of("a", "b"), 3));
+        assertEquals("@@ -1,2 +0,0 @@\n-a\n-b", LineDiff.unified(List.of("a", "b"), List.of(), 3));
+
+        List<String> before = new ArrayList<>();
+        List<String> after = new ArrayList<>();
+        for (int i = 0; i <= LineDiff.MAX_EDITS; i++) {
+            before.add("old " + i);
+            after.add("new " + i);
+        }
+        assertNull(LineDiff.unified(before, after, 2));
+    }
+}
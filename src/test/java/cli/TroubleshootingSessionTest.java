@@ -0,0 +1,264 @@
+package cli;
+
+import ai.AIHandler;
+import journal.SessionJournal;
+import loadtest.LatencyDistribution;
+import loadtest.MockLLMServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class TroubleshootingSessionTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testResumeReplaysJournalWithoutProviderOrCommands() throws Exception {
+        String id;
+        SessionResult original;
+        try (SessionJournal journal = SessionJournal.create(directory)) {
+            id = journal.getId();
+            TroubleshootingSession session = session(new AIHandler("Fake", "fake", ""), new BatchPolicy());
+            session.setJournal(journal);
+            original = session.run();
+        }
+
+        try (SessionJournal journal = SessionJournal.open(directory, id)) {
+            assertEquals("check disk space", JournalReplay.query(journal));
+            // An unknown provider would answer with an error if it were ever asked
+            TroubleshootingSession resumed = new TroubleshootingSession(new AIHandler("Unknown", "none", ""),
+                "OS: test", JournalReplay.query(journal), false, new BatchPolicy(), BatchCommand.DISCARD);
+            resumed.setJournal(journal);
+            SessionResult result = resumed.run();
+
+            assertNull(result.getError());
+            assertTrue(result.isResolved());
+            assertEquals(original.getCommands().size(), result.getCommands().size());
+            for (int i = 0; i < result.getCommands().size(); i++) {
+                assertEquals(original.getCommands().get(i).getStatus(), result.getCommands().get(i).getStatus());
+                assertEquals(original.getCommands().get(i).getOutput(), result.getCommands().get(i).getOutput());
+            }
+        }
+    }
+
+    @Test
+    void testDiagnosticsUseFastModelAndEscalateUnusableAnswers() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("```\n```"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            handler.setFastModel("gpt-3.5-turbo");
+            SessionResult result = session(handler, new BatchPolicy()).run();
+
+            assertTrue(result.isResolved());
+            // The fast model's answer names no commands, so the diagnostic prompt is asked again
+            assertEquals(1, mock.getRequests("gpt-3.5-turbo"));
+            assertEquals(2, mock.getRequests("gpt-4"));
+        }
+    }
+
+    @Test
+    void testBudgetStopsRunawaySession() throws Exception {
+        // A policy that always wants another iteration, with an AI that never resolves the problem
+        SessionPolicy persistent = new BatchPolicy() {
+            @Override
+            public boolean continueIteration(boolean verdictGiven) {
+                return true;
+            }
+        };
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: true\nPURPOSE: nothing"), List.of("PROBLEM_RESOLVED: NO, still broken")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+
+            TroubleshootingSession capped = session(handler, persistent);
+            capped.setBudget(new SessionBudget(0, 0, 3));
+            SessionResult result = capped.run();
+            assertEquals(3, result.getIterations());
+            assertTrue(result.getStopReason().startsWith("iteration budget"));
+            assertEquals(6, result.getUsage().getCalls());
+            assertTrue(result.toJson().has("usage"));
+
+            // The first prompt alone uses up a tiny token budget, so no solution is asked for
+            TroubleshootingSession starved = session(handler, persistent);
+            starved.setBudget(new SessionBudget(10, 0, 0));
+            result = starved.run();
+            assertEquals(1, result.getIterations());
+            assertEquals(1, result.getUsage().getCalls());
+            assertTrue(result.getStopReason().startsWith("token budget"));
+        }
+    }
+
+    @Test
+    void testBatchNeverRunsCommandsGuessedFromProse() throws Exception {
+        Path marker = directory.resolve("marker");
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("You could try this:\ntouch " + marker), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            SessionResult result = session(mock).run();
+
+            assertTrue(result.getCommands().isEmpty());
+            assertFalse(Files.exists(marker));
+        }
+        // The interactive fallback would have picked up the prose, and the line after it
+        assertEquals(List.of("You could try this:", "touch " + marker),
+                     List.of(TroubleshootingSession.extractCommands("You could try this:\ntouch " + marker)));
+    }
+
+    @Test
+    void testCompactionKeepsHeaderAndLatestResults() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: echo one\nCOMMAND: echo two\nCOMMAND: echo three"),
+                         List.of("PROBLEM_RESOLVED: YES")).start()) {
+            TroubleshootingSession session = session(mock);
+            session.run();
+
+            assertEquals(2, session.compactContext(30));
+            String context = session.getContext();
+            assertTrue(context.startsWith("OS: test\nUser query: check disk space\n[2 earlier command results omitted"));
+            assertFalse(context.contains("echo two"));
+            assertTrue(context.endsWith("Command: echo three\nOutput: three\n"));
+            assertEquals(0, session.compactContext(30));
+        }
+    }
+
+    @Test
+    void testSuggestionsForMissingToolsAreSkipped() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: sysai-no-such-tool --status\nCOMMAND: echo ok"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            TroubleshootingSession session = session(mock);
+            SessionResult result = session.run();
+
+            assertEquals("skipped-missing", result.getCommands().get(0).getStatus());
+            assertEquals("executed", result.getCommands().get(1).getStatus());
+            assertTrue(session.getContext().contains("Command (skipped - not installed): sysai-no-such-tool --status"));
+        }
+    }
+
+    @Test
+    void testCancelAbortsSlowProviderCall() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().latency(LatencyDistribution.fixed(20_000)).start();
+             SessionJournal journal = SessionJournal.create(directory)) {
+            TroubleshootingSession session = session(mock);
+            session.setJournal(journal);
+            Thread canceller = new Thread(() -> {
+                // Cancel once the request is in flight, or after a while anyway so the test can't hang
+                long deadline = System.nanoTime() + 10_000_000_000L;
+                while (mock.getRequests() == 0 && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                session.cancel();
+            });
+            canceller.start();
+            long start = System.nanoTime();
+            SessionResult result = session.run();
+            canceller.join(10_000);
+
+            assertTrue(System.nanoTime() - start < 10_000_000_000L);
+            assertEquals("cancelled by user", result.getStopReason());
+            assertEquals(1, mock.getRequests());
+            assertTrue(result.getCommands().isEmpty());
+            // The interrupted answer is not journaled, so resuming asks again
+            assertTrue(journal.getRecords().stream().noneMatch(r -> r.getType() == SessionJournal.Type.RESPONSE));
+        }
+    }
+
+    @Test
+    void testNextDiagnosticPromptIsPrefetchedWhileUserDecides() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: echo ok"), List.of("COMMAND: echo fix\nEXPLANATION: fix it\nPROBLEM_RESOLVED: NO, still broken"))
+                 .start()) {
+            SessionPolicy policy = new BatchPolicy() {
+                private int decisions;
+
+                @Override
+                public boolean continueIteration(boolean verdictGiven) {
+                    // Each iteration makes two requests, and the next diagnostic prompt is sent before the user decides
+                    long expected = 2L * (decisions + 1) + 1;
+                    long deadline = System.nanoTime() + 10_000_000_000L;
+                    while (mock.getRequests() < expected && System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+                    assertEquals(expected, mock.getRequests());
+                    return ++decisions == 1;
+                }
+
+                @Override
+                public boolean mayContinue() {
+                    return true;
+                }
+            };
+            TroubleshootingSession session = session(mock, policy);
+            SessionResult result = session.run();
+
+            assertEquals(2, result.getIterations());
+            // Diagnostics and solution of the first iteration, the prefetch used by the second, its solution,
+            // and a prefetch for a third iteration that was discarded
+            assertEquals(5, mock.getRequests());
+            assertEquals(4, result.getCommands().size());
+        }
+    }
+
+    @Test
+    void testTimeBudgetCutsOffBlockingProvider() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().latency(LatencyDistribution.fixed(20_000)).start()) {
+            TroubleshootingSession session = session(mock);
+            session.setBudget(new SessionBudget(0, 1, 0));
+            long start = System.nanoTime();
+            SessionResult result = session.run();
+
+            // The provider would answer after 20 s; the session ends at its 1 s budget
+            assertTrue(System.nanoTime() - start < 10_000_000_000L);
+            assertEquals("time budget of 1 s reached", result.getStopReason());
+            assertTrue(result.getCommands().isEmpty());
+        }
+    }
+
+    @Test
+    void testDiscardedPrefetchIsChargedWhenItsCallReturns() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().latency(LatencyDistribution.fixed(500))
+                 .script(List.of("COMMAND: echo ok"), List.of("PROBLEM_RESOLVED: NO, still broken")).start()) {
+            SessionPolicy stopping = new BatchPolicy() {
+                @Override
+                public boolean continueIteration(boolean verdictGiven) {
+                    // Stop while the prefetch is still waiting for the provider
+                    long deadline = System.nanoTime() + 10_000_000_000L;
+                    while (mock.getRequests() < 3 && System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+                    assertEquals(3, mock.getRequests());
+                    return false;
+                }
+
+                @Override
+                public boolean mayContinue() {
+                    return true;
+                }
+            };
+            TroubleshootingSession session = session(mock, stopping);
+            SessionResult result = session.run();
+
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (result.getUsage().getCalls() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, result.getUsage().getCalls());
+        }
+    }
+
+    /**
+     * A batch session about "check disk space" asking the mock provider
+     */
+    private static TroubleshootingSession session(MockLLMServer mock) {
+        return session(mock, new BatchPolicy());
+    }
+
+    private static TroubleshootingSession session(MockLLMServer mock, SessionPolicy policy) {
+        return session(new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl()), policy);
+    }
+
+    private static TroubleshootingSession session(AIHandler handler, SessionPolicy policy) {
+        return new TroubleshootingSession(handler, "OS: test", "check disk space", false, policy, BatchCommand.DISCARD);
+    }
+}
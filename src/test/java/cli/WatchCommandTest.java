@@ -0,0 +1,75 @@
+package cli;
+
+import ai.AIHandler;
+import loadtest.MockLLMServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Scanner;
+import picocli.CommandLine;
+
+class WatchCommandTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testMeaningfulChangeIgnoresSmallNumericDrift() {
+        assertFalse(WatchCommand.meaningfulChange("/dev/sda1 50G 40G 80%", "/dev/sda1 50G 41G 82%", 10));
+        assertTrue(WatchCommand.meaningfulChange("/dev/sda1 50G 40G 80%", "/dev/sda1 50G 48G 96%", 10));
+        assertTrue(WatchCommand.meaningfulChange("nginx active", "nginx failed", 10));
+        assertTrue(WatchCommand.meaningfulChange("one\ntwo", "one\ntwo\nthree", 10));
+        assertTrue(WatchCommand.meaningfulChange("load 1.0", "load 1.01", 0));
+
+        assertEquals(500, WatchCommand.parseInterval("500ms"));
+        assertEquals(30_000, WatchCommand.parseInterval("30s"));
+        assertEquals(300_000, WatchCommand.parseInterval("5m"));
+        assertEquals(45_000, WatchCommand.parseInterval("45"));
+        assertThrows(IllegalArgumentException.class, () -> WatchCommand.parseInterval("soon"));
+    }
+
+    @Test
+    void testAIIsAskedOnlyWhenOutputChangesMeaningfully() throws Exception {
+        Path status = directory.resolve("status.txt");
+        Files.writeString(status, "used 100\nstate ok\n");
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: cat " + status + "\nPURPOSE: usage"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            WatchCommand watch = new WatchCommand();
+            new CommandLine(watch).parseArgs("--tolerance", "10", "disk", "usage");
+
+            assertEquals(1, watch.plan(handler, "OS: test", new Scanner("yes\n"), BatchCommand.DISCARD));
+            assertEquals(1, mock.getRequests());
+
+            Files.writeString(status, "used 105\nstate ok\n");
+            assertFalse(watch.check(handler, "OS: test", BatchCommand.DISCARD));
+            // 105 is within 10% of the 100 the AI last saw, 112 is not
+            Files.writeString(status, "used 112\nstate ok\n");
+            assertTrue(watch.check(handler, "OS: test", BatchCommand.DISCARD));
+            assertFalse(watch.check(handler, "OS: test", BatchCommand.DISCARD));
+            Files.writeString(status, "used 112\nstate degraded\n");
+            assertTrue(watch.check(handler, "OS: test", BatchCommand.DISCARD));
+            assertEquals(3, mock.getRequests());
+        }
+    }
+
+    @Test
+    void testFreeTextCommandsRunOnlyOnceConfirmed() throws Exception {
+        Path marker = directory.resolve("marker");
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: touch " + marker + "\nPURPOSE: changes the system"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            WatchCommand watch = new WatchCommand();
+            new CommandLine(watch).parseArgs("disk", "usage");
+
+            // Nothing marks the command as read-only, so it isn't even run for a baseline without a yes
+            assertEquals(0, watch.plan(handler, "OS: test", new Scanner("no\n"), BatchCommand.DISCARD));
+            // No answer at all, e.g. stdin closed, is a no too
+            assertEquals(0, watch.plan(handler, "OS: test", new Scanner(""), BatchCommand.DISCARD));
+            assertFalse(Files.exists(marker));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class SessionJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsSurviveReopen() throws Exception {
+        String largeOutput = "line of output ✓\n".repeat(20_000);
+        String id;
+        try (SessionJournal journal = SessionJournal.create(directory)) {
+            id = journal.getId();
+            journal.append(SessionJournal.Type.META, "{\"query\":\"disk full\"}");
+            journal.append(SessionJournal.Type.RESPONSE, "");
+            journal.append(SessionJournal.Type.COMMAND, largeOutput);
+        }
+
+        try (SessionJournal journal = SessionJournal.open(directory, id)) {
+            List<SessionJournal.Record> records = journal.getRecords();
+            assertEquals(3, records.size());
+            assertEquals(SessionJournal.Type.META, records.get(0).getType());
+            assertEquals("", records.get(1).text());
+            assertEquals(largeOutput, records.get(2).text());
+
+            journal.append(SessionJournal.Type.RESOLUTION, "YES");
+        }
+        try (SessionJournal journal = SessionJournal.open(directory, id)) {
+            assertEquals(4, journal.getRecords().size());
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheJournal() throws Exception {
+        String id;
+        Path file;
+        try (SessionJournal journal = SessionJournal.create(directory)) {
+            id = journal.getId();
+            file = journal.getFile();
+            journal.append(SessionJournal.Type.PROMPT, "first");
+            journal.append(SessionJournal.Type.RESPONSE, "second");
+        }
+        // Corrupt the last payload byte as a torn write would
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), Files.size(file) - 1);
+        }
+
+        try (SessionJournal journal = SessionJournal.open(directory, id)) {
+            assertEquals(1, journal.getRecords().size());
+            journal.append(SessionJournal.Type.RESPONSE, "rewritten");
+        }
+        try (SessionJournal journal = SessionJournal.open(directory, id)) {
+            assertEquals("rewritten", journal.getRecords().get(1).text());
+        }
+    }
+
+    @Test
+    public void testRejectsUnknownOrUnsafeIds() {
+        assertThrows(IllegalArgumentException.class, () -> SessionJournal.open(directory, "../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> SessionJournal.open(directory, "20260101-000000-abcd"));
+    }
+}
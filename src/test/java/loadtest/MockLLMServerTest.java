@@ -0,0 +1,57 @@
+package loadtest;
+
+import ai.AIHandler;
+import ai.CommandPlan;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+public class MockLLMServerTest {
+    @Test
+    public void testOpenAiTextFormat() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer()
+                 .script(List.of("COMMAND: uname -a\nPURPOSE: kernel"), List.of("PROBLEM_RESOLVED: YES")).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            assertEquals("COMMAND: uname -a\nPURPOSE: kernel", handler.sendQuery("what is running?"));
+            assertEquals("PROBLEM_RESOLVED: YES", handler.sendQuery("... end with PROBLEM_RESOLVED: YES"));
+            assertEquals(2, mock.getRequests());
+        }
+    }
+
+    @Test
+    public void testGeminiStructuredFormat() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().start()) {
+            AIHandler handler = new AIHandler("Gemini", "gemini-pro", "mock-key", mock.getBaseUrl());
+            // Long enough for the Gemini provider to gzip the request body
+            CommandPlan plan = handler.sendStructuredQuery("disk is full " + "x".repeat(10_000));
+            assertNotNull(plan);
+            assertEquals("uptime", plan.getCommands().get(0).getCommand());
+            assertTrue(plan.getCommands().get(0).isReadOnly());
+            assertFalse(plan.isResolved());
+        }
+    }
+
+    @Test
+    public void testErrorInjection() throws Exception {
+        try (MockLLMServer mock = new MockLLMServer().errors(1.0, 429).start()) {
+            AIHandler handler = new AIHandler("OpenAI", "gpt-4", "mock-key", mock.getBaseUrl());
+            String response = handler.sendQuery("anything");
+            assertTrue(response.startsWith("[ERROR] OpenAI API error (status 429)"), response);
+            assertEquals(1, mock.getInjectedErrors());
+        }
+    }
+
+    @Test
+    public void testLatencySpecs() {
+        Random random = new Random(42);
+        assertEquals(200, LatencyDistribution.parse("fixed:200").sampleMillis(random));
+        long uniform = LatencyDistribution.parse("uniform:100-500").sampleMillis(random);
+        assertTrue(uniform >= 100 && uniform <= 500);
+        assertTrue(LatencyDistribution.parse("lognormal:300:0.5").sampleMillis(random) > 0);
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("uniform:500-100"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("normal:300"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("fixed"));
+    }
+}
@@ -0,0 +1,54 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.json.JSONObject;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBucketsArePowersOfTwo() {
+        assertEquals(0, LatencyHistogram.bucketFor(0));
+        assertEquals(0, LatencyHistogram.bucketFor(1));
+        assertEquals(1, LatencyHistogram.bucketFor(2));
+        assertEquals(1, LatencyHistogram.bucketFor(3));
+        assertEquals(19, LatencyHistogram.bucketFor(1_000_000));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram("test", "Test histogram");
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000_000);
+        }
+        histogram.record(500_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(500_000_000, histogram.getMaxNanos());
+        // 1 ms falls in the [2^19, 2^20) ns bucket
+        assertEquals(1L << 20, histogram.getPercentileNanos(0.50));
+        assertEquals(1L << 20, histogram.getPercentileNanos(0.99));
+        assertEquals(500_000_000, histogram.getPercentileNanos(1.0));
+    }
+
+    @Test
+    public void testExportFormats() {
+        LatencyHistogram histogram = new LatencyHistogram("ai_query", "AI round trip");
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(1000);
+
+        String text = MetricsExporter.toPrometheus(List.of(histogram));
+        assertTrue(text.contains("# TYPE sysai_ai_query_seconds histogram"));
+        assertTrue(text.contains("sysai_ai_query_seconds_bucket{le=\"4.0E-9\"} 2"));
+        assertTrue(text.contains("sysai_ai_query_seconds_bucket{le=\"+Inf\"} 3"));
+        assertTrue(text.contains("sysai_ai_query_seconds_count 3"));
+        assertFalse(text.contains("le=\"2.0E-9\""), "empty leading buckets are skipped");
+
+        JSONObject json = MetricsExporter.toJson(List.of(histogram)).getJSONObject("ai_query");
+        assertEquals(3, json.getLong("count"));
+        assertEquals(0.001, json.getDouble("max_ms"), 1e-9);
+    }
+}
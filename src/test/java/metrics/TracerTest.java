@@ -0,0 +1,46 @@
+package metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class TracerTest {
+    @AfterEach
+    public void tearDown() {
+        Tracer.reset();
+    }
+
+    @Test
+    public void testSpansAreIgnoredUntilEnabled() {
+        Tracer.span("before", "test", System.nanoTime());
+        assertEquals(0, Tracer.toJson().getJSONArray("traceEvents").length());
+    }
+
+    @Test
+    public void testCompleteEventsWithArgs() {
+        Tracer.enable();
+        long start = System.nanoTime();
+        Tracer.span("http_post", "ai", start, "bytes_sent", 1200, "status", 200, "exit_code", null);
+
+        JSONArray events = Tracer.toJson().getJSONArray("traceEvents");
+        JSONObject span = null;
+        for (int i = 0; i < events.length(); i++) {
+            if (events.getJSONObject(i).getString("ph").equals("X")) {
+                span = events.getJSONObject(i);
+            } else {
+                assertEquals("thread_name", events.getJSONObject(i).getString("name"));
+            }
+        }
+        assertNotNull(span);
+        assertEquals("http_post", span.getString("name"));
+        assertEquals("ai", span.getString("cat"));
+        assertTrue(span.getDouble("ts") >= 0);
+        assertTrue(span.getDouble("dur") >= 0);
+        assertEquals(Thread.currentThread().getId(), span.getLong("tid"));
+        assertEquals(1200, span.getJSONObject("args").getInt("bytes_sent"));
+        assertTrue(span.getJSONObject("args").isNull("exit_code"));
+    }
+}
@@ -3,6 +3,8 @@ package safety;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import metrics.Metrics;
+
 class SafetyCheckerTest {
     @Test
     void testDangerousCommandDetection() {
@@ -31,4 +33,11 @@ class SafetyCheckerTest {
         assertNull(SafetyChecker.getDangerReason("ls -la"));
         assertNull(SafetyChecker.getDangerReason("echo hello"));
     }
+
+    @Test
+    void testDangerReasonIsNotRecordedAsASafetyCheck() {
+        long checks = Metrics.SAFETY_CHECK.getCount();
+        assertNotNull(SafetyChecker.getDangerReason("rm -rf /"));
+        assertEquals(checks, Metrics.SAFETY_CHECK.getCount());
+    }
 }
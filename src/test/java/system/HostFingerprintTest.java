@@ -0,0 +1,54 @@
+package system;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+public class HostFingerprintTest {
+    @TempDir
+    Path root;
+
+    @Test
+    public void testCollectsFactsAndReusesThemUntilReboot() throws Exception {
+        write("etc/os-release", "NAME=\"Debian GNU/Linux\"\nVERSION_ID=\"12\"\nPRETTY_NAME=\"Debian GNU/Linux 12 (bookworm)\"\n");
+        write("proc/sys/kernel/osrelease", "6.1.0-18-amd64\n");
+        write("proc/sys/kernel/random/boot_id", "first-boot\n");
+        write("proc/1/comm", "systemd\n");
+        write("proc/cpuinfo", "processor\t: 0\nmodel name\t: Example CPU @ 3.00GHz\n\nprocessor\t: 1\nmodel name\t: Example CPU @ 3.00GHz\n");
+        write("proc/meminfo", "MemTotal:        8388608 kB\nMemFree:         1024 kB\nSwapTotal:       2097152 kB\n");
+        write("usr/bin/apt-get", "");
+        Files.setPosixFilePermissions(root.resolve("usr/bin/apt-get"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        Path cache = root.resolve("cache/host.json");
+
+        String facts = new HostFingerprint(root, cache).load();
+        assertTrue(facts.contains("- Distribution: Debian GNU/Linux 12 (bookworm)"), facts);
+        assertTrue(facts.contains("- Kernel: 6.1.0-18-amd64"), facts);
+        assertTrue(facts.contains("- Init system: systemd"), facts);
+        assertTrue(facts.contains("- Package manager: apt-get"), facts);
+        assertTrue(facts.contains("- CPU: Example CPU @ 3.00GHz, 2 cores"), facts);
+        assertTrue(facts.contains("- Memory: 8.0 GiB RAM, 2.0 GiB swap"), facts);
+        assertTrue(Files.exists(cache));
+
+        // Same boot and kernel: served from the cache without rereading the facts
+        write("etc/os-release", "PRETTY_NAME=\"Fedora Linux 40\"\n");
+        assertEquals(facts, new HostFingerprint(root, cache).load());
+
+        write("proc/sys/kernel/random/boot_id", "second-boot\n");
+        assertTrue(new HostFingerprint(root, cache).load().contains("- Distribution: Fedora Linux 40"));
+    }
+
+    @Test
+    public void testNoFactsWithoutProc() {
+        assertEquals("", new HostFingerprint(root, root.resolve("host.json")).load());
+    }
+
+    private void write(String relativePath, String content) throws Exception {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
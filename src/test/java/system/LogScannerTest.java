@@ -0,0 +1,100 @@
+package system;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class LogScannerTest {
+    private static final DateTimeFormatter ISO = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testKeepsRelevantLinesOldestFirstWithLineNumbers() throws Exception {
+        String now = LocalDateTime.now().format(ISO);
+        Path log = directory.resolve("app.log");
+        Files.writeString(log, String.join("\n",
+            now + " INFO started",
+            now + " ERROR disk quota exceeded",
+            now + " INFO nginx reload requested",
+            now + " INFO heartbeat",
+            "no timestamp, Connection refused") + "\n");
+
+        String output = new LogScanner(List.of("nginx"), Instant.now().minus(Duration.ofHours(1))).scan(log);
+        String[] lines = output.split("\n");
+        assertTrue(lines[0].contains("3 relevant of 5 lines"), lines[0]);
+        assertTrue(lines[0].contains("from the start of the file"), lines[0]);
+        assertEquals("2: " + now + " ERROR disk quota exceeded", lines[1]);
+        assertEquals("3: " + now + " INFO nginx reload requested", lines[2]);
+        assertEquals("5: no timestamp, Connection refused", lines[3]);
+        assertEquals(4, lines.length);
+    }
+
+    @Test
+    public void testStopsAtLinesOlderThanTheWindow() throws Exception {
+        StringBuilder content = new StringBuilder();
+        String old = LocalDateTime.now().minusDays(3).format(ISO);
+        for (int i = 0; i < 50_000; i++) {
+            content.append(old).append(" ERROR old failure ").append(i).append('\n');
+        }
+        String recent = LocalDateTime.now().format(ISO);
+        content.append(recent).append(" kernel: Out of memory: Killed process 4242\n");
+        Path log = directory.resolve("syslog.log");
+        Files.writeString(log, content);
+
+        assertEquals(log, LogScanner.logFileOf("cat " + log));
+        String output = LogScanner.forQuery("why was my process killed?").scan(log);
+        String[] lines = output.split("\n");
+        assertTrue(lines[0].contains("1 relevant of 2 lines"), lines[0]);
+        assertTrue(lines[0].contains("count back from the end"), lines[0]);
+        assertTrue(lines[0].contains("stopped: reached lines older than "), lines[0]);
+        assertEquals("-1: " + recent + " kernel: Out of memory: Killed process 4242", lines[1]);
+        assertEquals(2, lines.length);
+    }
+
+    @Test
+    public void testStopReasonNamesTheCutoffUsed() throws Exception {
+        Path log = directory.resolve("app.log");
+        Files.writeString(log, LocalDateTime.now().minusHours(3).format(ISO) + " ERROR stale\n"
+            + LocalDateTime.now().format(ISO) + " ERROR fresh\n");
+        LocalDateTime since = LocalDateTime.now().minusHours(1).withNano(0);
+
+        String output = new LogScanner(List.of(), since.atZone(ZoneId.systemDefault()).toInstant()).scan(log);
+        String header = output.split("\n")[0];
+        assertTrue(header.contains("stopped: reached lines older than "
+            + since.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))), header);
+    }
+
+    @Test
+    public void testLinesLongerThanAChunkCountOnce() throws Exception {
+        Path log = directory.resolve("long.log");
+        Files.writeString(log, "ERROR before\n" + "x".repeat(2_500_000) + "\nafter\n");
+        String output = new LogScanner(List.of(), Instant.now()).scan(log);
+        assertTrue(output.startsWith("[Log scan of " + log + " (2.4 MB): 1 relevant of 3 lines"), output);
+        assertTrue(output.endsWith("\n1: ERROR before"), output);
+    }
+
+    @Test
+    public void testOnlyPlainDumpsOfLogFilesAreIntercepted() throws Exception {
+        Path log = directory.resolve("big.log");
+        Files.writeString(log, "x".repeat((int) LogScanner.MIN_FILE_BYTES));
+        Path small = directory.resolve("small.log");
+        Files.writeString(small, "x\n");
+
+        assertEquals(log, LogScanner.logFileOf("less " + log));
+        assertNull(LogScanner.logFileOf("cat " + log + " | grep error"));
+        assertNull(LogScanner.logFileOf("tail -n 50 " + log));
+        assertNull(LogScanner.logFileOf("cat " + small));
+        assertNull(LogScanner.logFileOf("cat " + directory.resolve("missing.log")));
+    }
+}
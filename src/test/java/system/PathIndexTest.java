@@ -0,0 +1,72 @@
+package system;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+class PathIndexTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLookupsFollowDirectoryChanges() throws Exception {
+        Path bin = Files.createDirectories(directory.resolve("bin"));
+        Path sbin = Files.createDirectories(directory.resolve("sbin"));
+        executable(bin.resolve("df"));
+        executable(bin.resolve("grep"));
+        Files.writeString(bin.resolve("README"), "not a program");
+        PathIndex index = new PathIndex(bin + File.pathSeparator + sbin + File.pathSeparator + directory.resolve("missing"), List.of());
+
+        assertEquals(bin.resolve("df").toString(), index.resolve("df"));
+        assertFalse(index.contains("README"));
+        assertFalse(index.contains("iostat"));
+
+        // Installing a tool changes the directory's modification time, which triggers a new listing
+        executable(sbin.resolve("iostat"));
+        Files.setLastModifiedTime(sbin, FileTime.fromMillis(Files.getLastModifiedTime(sbin).toMillis() + 2000));
+        assertTrue(index.contains("iostat"));
+
+        assertEquals(List.of("nvidia-smi", "ss"),
+                     List.copyOf(index.missing(List.of("sudo df -h | grep /var", "sudo -u root df -i", "nvidia-smi -q", "cd /tmp && ss -tlnp", "df -i"))));
+    }
+
+    @Test
+    void testExecutablesOfCommandLine() {
+        assertEquals(List.of("journalctl", "grep", "tail"),
+                     PathIndex.executables("LANG=C journalctl -u nginx | grep -i error | tail -n 20"));
+        assertEquals(List.of("free"), PathIndex.executables("echo $(free -m); for i in 1 2; do true; done"));
+        assertEquals(List.of("uptime", "iostat"), PathIndex.executables("uptime; for i in 1 2; do iostat -x; done"));
+        assertEquals(List.of("cat", "ls", "head", "hostname"),
+                     PathIndex.executables("cat $(ls /etc/*.conf | head -1) `hostname`"));
+    }
+
+    @Test
+    void testOptionsOfPrefixesAreNotPrograms() {
+        assertEquals(List.of("psql"), PathIndex.executables("sudo -u postgres psql -c 'select 1'"));
+        assertEquals(List.of("ls"), PathIndex.executables("time -p ls"));
+        assertEquals(List.of("id"), PathIndex.executables("sudo -E -g adm --user=root -- id"));
+        assertEquals(List.of("du"), PathIndex.executables("sudo --user postgres time -f %e du -sh /var"));
+        assertEquals(List.of(), PathIndex.executables("sudo -l"));
+        assertEquals(List.of(), PathIndex.executables("sudo -u root"));
+    }
+
+    @Test
+    void testSeparatorsInsideQuotesDoNotStartCommands() {
+        assertEquals(List.of("ps", "grep"), PathIndex.executables("ps aux | grep -E \"nginx|apache\""));
+        assertEquals(List.of("uptime"), PathIndex.executables("echo 'a; b && c' \"d | e\"; uptime"));
+        assertEquals(List.of("awk"), PathIndex.executables("awk '{print $1; print $2}' /etc/passwd"));
+        assertEquals(List.of("sed", "sort"), PathIndex.executables("sed -e 's/a|b/c/;s/x/y/' /etc/hosts | sort"));
+        assertEquals(List.of("grep"), PathIndex.executables("grep -c \"$((1 + 2))\" /dev/null"));
+    }
+
+    private static void executable(Path file) throws Exception {
+        Files.writeString(file, "#!/bin/sh\n");
+        assertTrue(file.toFile().setExecutable(true));
+    }
+}
@@ -2,7 +2,10 @@ package system;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Arrays;
 
@@ -39,4 +42,77 @@ public class SystemExecutorTest {
         result = SystemExecutor.parseCommand(null);
         assertEquals(0, result.size());
     }
+
+    @Test
+    public void testExecutionProfiles() {
+        assertEquals(ExecutionProfile.DIAGNOSTIC, ExecutionProfile.forCommand(true, false));
+        assertEquals(ExecutionProfile.CHANGE, ExecutionProfile.forCommand(false, false));
+        assertEquals(ExecutionProfile.CHANGE, ExecutionProfile.forCommand(true, true));
+
+        // A command flooding its output is stopped at the cap instead of filling memory
+        String flood = SystemExecutor.executeCommand(List.of("yes"), 30, ExecutionProfile.DIAGNOSTIC, null);
+        assertTrue(flood.endsWith("Command stopped after " + ExecutionProfile.DIAGNOSTIC.getMaxOutputBytes() + " bytes of output"));
+        assertTrue(flood.length() < ExecutionProfile.DIAGNOSTIC.getMaxOutputBytes() + 100);
+        // Even when it never ends a line
+        String binary = SystemExecutor.executeCommand(List.of("cat", "/dev/zero"), 30, ExecutionProfile.DIAGNOSTIC, null);
+        assertEquals("\nCommand stopped after " + ExecutionProfile.DIAGNOSTIC.getMaxOutputBytes() + " bytes of output", binary);
+        // A command changing the system is never killed half-way; only its output is cut off
+        assertFalse(ExecutionProfile.CHANGE.isStoppedAtOutputCap());
+        String change = SystemExecutor.executeCommandString(
+            "head -c " + 2 * ExecutionProfile.CHANGE.getMaxOutputBytes() + " /dev/zero; echo done >&2; exit 3",
+            ExecutionProfile.CHANGE, null);
+        assertEquals("\nOutput cut off after " + ExecutionProfile.CHANGE.getMaxOutputBytes() +
+                     " bytes; the command ran to completion and exited with code 3", change);
+
+        assumeTrue(Files.isExecutable(Path.of("/usr/bin/nice")) && Files.isExecutable(Path.of("/usr/bin/prlimit")));
+        String limits = SystemExecutor.executeCommandString("nice; ulimit -t; ulimit -d", ExecutionProfile.DIAGNOSTIC, null);
+        assertEquals("19\n60\n" + (4L << 20), limits.trim());
+        // A JVM diagnostic tool reserving a large heap still starts
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String jvm = SystemExecutor.executeCommand(List.of(java, "-Xmx16g", "-version"), 30, ExecutionProfile.DIAGNOSTIC, null);
+        assertFalse(jvm.contains("exited with code"), jvm);
+        assertEquals("0", SystemExecutor.executeCommandString("nice", ExecutionProfile.CHANGE, null).trim());
+    }
+
+    @Test
+    public void testLearnedDeadlinesOnlyShortenDiagnostics() {
+        String signature = TimeoutPolicy.signature("systemctl restart --fast-in-tests");
+        for (int i = 0; i < TimeoutPolicy.MIN_SAMPLES; i++) {
+            TimeoutPolicy.getDefault().record(signature, 10);
+        }
+        assertEquals(TimeoutPolicy.MIN_TIMEOUT_MILLIS, SystemExecutor.deadlineMillis(signature, ExecutionProfile.DIAGNOSTIC));
+        // A restart that is slower than usual must not be killed half-way
+        assertEquals(TimeoutPolicy.DEFAULT_TIMEOUT_MILLIS, SystemExecutor.deadlineMillis(signature, ExecutionProfile.CHANGE));
+    }
+
+    @Test
+    public void testTimeoutKillsSilentCommand() {
+        // A command that never prints must still be stopped at its deadline, not when it finally exits
+        long start = System.nanoTime();
+        String output = SystemExecutor.executeCommand(List.of("sleep", "20"), 1);
+        assertEquals("Command timed out after 1 seconds", output);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    @Test
+    public void testCancelKillsRunningCommand() throws Exception {
+        Thread caller = Thread.currentThread();
+        Thread canceller = new Thread(() -> {
+            // Retry until the command has started, but never hang the build if cancelling is broken
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (!SystemExecutor.cancel(caller) && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        canceller.start();
+        long start = System.nanoTime();
+        String output = SystemExecutor.executeCommandString("echo started; sleep 20", 60, null);
+        canceller.join(10_000);
+        assertEquals("started\n\n" + SystemExecutor.CANCELLED_MESSAGE, output);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
 }
@@ -0,0 +1,66 @@
+package system;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class TimeoutPolicyTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSignatureKeepsExecutableSubcommandAndFlags() {
+        assertEquals("journalctl --since", TimeoutPolicy.signature("journalctl --since yesterday"));
+        assertEquals("journalctl --since", TimeoutPolicy.signature("journalctl --since=today"));
+        assertEquals("df -h", TimeoutPolicy.signature("sudo /bin/df -h /mnt/nfs"));
+        assertEquals("systemctl status --no-pager", TimeoutPolicy.signature("systemctl status nginx --no-pager"));
+        assertEquals("ps aux | grep", TimeoutPolicy.signature("ps aux | grep 'nginx: worker'"));
+        assertEquals("", TimeoutPolicy.signature("  "));
+    }
+
+    @Test
+    void testDeadlineFollowsObservedP99AndPersists() {
+        Path file = directory.resolve("timeouts.json");
+        TimeoutPolicy policy = new TimeoutPolicy(file);
+        assertEquals(TimeoutPolicy.DEFAULT_TIMEOUT_MILLIS, policy.timeoutMillis("df -h"));
+
+        // A fast command fails fast, but never faster than the floor
+        for (int i = 0; i < 20; i++) {
+            policy.record("df -h", 15);
+        }
+        assertEquals(TimeoutPolicy.MIN_TIMEOUT_MILLIS, policy.timeoutMillis("df -h"));
+
+        // A slow command gets a multiple of its p99 instead of being killed at the default
+        for (int i = 0; i < 20; i++) {
+            policy.record("journalctl --since", 40_000);
+        }
+        long slow = policy.timeoutMillis("journalctl --since");
+        assertTrue(slow >= 3 * 40_000 && slow <= TimeoutPolicy.MAX_TIMEOUT_MILLIS, String.valueOf(slow));
+
+        policy.flush();
+        TimeoutPolicy reloaded = new TimeoutPolicy(file);
+        assertEquals(TimeoutPolicy.MIN_TIMEOUT_MILLIS, reloaded.timeoutMillis("df -h"));
+        assertEquals(slow, reloaded.timeoutMillis("journalctl --since"));
+    }
+
+    @Test
+    void testSavesOnlyUnsavedChanges() throws Exception {
+        Path file = directory.resolve("timeouts.json");
+        TimeoutPolicy policy = new TimeoutPolicy(file);
+
+        // Recording doesn't touch the disk; the write is deferred
+        policy.record("df -h", 15);
+        assertFalse(Files.exists(file));
+
+        policy.flush();
+        assertTrue(Files.exists(file));
+
+        // Nothing changed since, so nothing is written again
+        Files.delete(file);
+        policy.flush();
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,40 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class AtomicFilesTest {
+    @Test
+    public void testWriteStringCreatesDirectoryAndReplacesContent(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("nested").resolve("state.json");
+        AtomicFiles.writeString(file, "first");
+        AtomicFiles.writeString(file, "second");
+
+        assertEquals("second", Files.readString(file));
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testFailedWriteKeepsOldContentAndRemovesTempFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("state.json");
+        AtomicFiles.writeString(file, "old");
+
+        assertThrows(IOException.class, () -> AtomicFiles.write(file, temp -> {
+            Files.writeString(temp, "half");
+            throw new IOException("disk full");
+        }));
+
+        assertEquals("old", Files.readString(file));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}